@@ -0,0 +1,182 @@
+package com.odiparpack.simulation.route;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Floyd–Warshall por bloques sobre una matriz plana de enteros, para grafos densos de miles de nodos.
+ * <p>
+ * La matriz se rellena hasta un múltiplo del tamaño de bloque y, para cada bloque k de la diagonal, se procesan
+ * tres fases: el propio bloque diagonal, los bloques de su fila y su columna, y el resto de bloques. Cada bloque
+ * cabe en la caché L2 y en la tercera fase los bloques son independientes, así que se reparten entre hilos.
+ * El núcleo min-plus {@code d[i][j] = min(d[i][j], d[i][k] + d[k][j])} se vectoriza con jdk.incubator.vector si
+ * el módulo está cargado; si no, se usa el núcleo escalar.
+ * <p>
+ * La aplicación calcula la tabla de todos los pares con AllPairsTable (N Dijkstras sobre el grafo CSR, más
+ * rápido en este grafo disperso); esta clase solo se compila con el perfil benchmark, para comparar ambos
+ * enfoques y los núcleos entre sí con FloydWarshallBenchmark.
+ * <p>
+ * Los tiempos se guardan en minutos como int; INF (Integer.MAX_VALUE / 2) marca la falta de camino y la suma
+ * de dos INF no desborda. Como la diagonal es 0 y los pesos no son negativos, la fila y la columna k no cambian
+ * durante la iteración k y el cálculo puede hacerse en el mismo arreglo.
+ */
+public final class BlockedFloydWarshall {
+    private static final Logger logger = Logger.getLogger(BlockedFloydWarshall.class.getName());
+
+    static final int INF = Integer.MAX_VALUE / 2;
+    static final int BLOCK_SIZE = 64;
+
+    public enum Mode {
+        /** Núcleo escalar en un hilo. */
+        SCALAR,
+        /** Núcleo escalar con las fases 2 y 3 en paralelo. */
+        PARALLEL_SCALAR,
+        /** Núcleo vectorial con las fases 2 y 3 en paralelo; escalar en paralelo si no hay Vector API. */
+        VECTOR
+    }
+
+    /**
+     * Operación min-plus sobre un bloque: para k en [k0, k0 + size), i en [i0, i0 + size) y j en [j0, j0 + size),
+     * d[i][j] = min(d[i][j], d[i][k] + d[k][j]).
+     */
+    interface MinPlusKernel {
+        void relax(int[] d, int stride, int i0, int j0, int k0, int size);
+    }
+
+    static final MinPlusKernel SCALAR_KERNEL = (d, stride, i0, j0, k0, size) -> {
+        for (int k = k0; k < k0 + size; k++) {
+            int rowK = k * stride;
+            for (int i = i0; i < i0 + size; i++) {
+                int rowI = i * stride;
+                int dik = d[rowI + k];
+                if (dik >= INF) continue;
+                for (int j = j0; j < j0 + size; j++) {
+                    int candidate = dik + d[rowK + j];
+                    if (candidate < d[rowI + j]) {
+                        d[rowI + j] = candidate;
+                    }
+                }
+            }
+        }
+    };
+
+    private static final MinPlusKernel VECTOR_KERNEL = loadVectorKernel();
+
+    private BlockedFloydWarshall() {
+    }
+
+    private static MinPlusKernel loadVectorKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            // Se carga por nombre para que esta clase no dependa del módulo incubado
+            return (MinPlusKernel) Class.forName(BlockedFloydWarshall.class.getPackageName() + ".VectorMinPlusKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warning("Vector API no disponible, se usa el núcleo escalar: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * @return true si el modo VECTOR usará instrucciones SIMD.
+     */
+    public static boolean isVectorAvailable() {
+        return VECTOR_KERNEL != null;
+    }
+
+    /**
+     * Calcula los tiempos mínimos entre todos los pares a partir de la matriz de tramos directos.
+     *
+     * @param timeMatrix Matriz de tiempos (minutos) con Long.MAX_VALUE en los tramos inexistentes o bloqueados.
+     * @param mode       Núcleo y paralelismo a usar.
+     * @return Matriz de tiempos mínimos, con Long.MAX_VALUE donde no hay camino.
+     */
+    public static long[][] shortestTimes(long[][] timeMatrix, Mode mode) {
+        int n = timeMatrix.length;
+        int stride = paddedSize(n);
+        int[] d = toFlat(timeMatrix, stride);
+        solve(d, stride, mode);
+
+        long[][] result = new long[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                int value = d[i * stride + j];
+                result[i][j] = value >= INF ? Long.MAX_VALUE : value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Tamaño de la matriz rellenada hasta un múltiplo de BLOCK_SIZE.
+     */
+    static int paddedSize(int n) {
+        return (n + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+    }
+
+    /**
+     * Copia la matriz a un arreglo plano de stride × stride; los nodos de relleno quedan aislados.
+     */
+    static int[] toFlat(long[][] timeMatrix, int stride) {
+        int n = timeMatrix.length;
+        int[] d = new int[stride * stride];
+        Arrays.fill(d, INF);
+        for (int i = 0; i < stride; i++) {
+            d[i * stride + i] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                long value = timeMatrix[i][j];
+                if (i != j && value != Long.MAX_VALUE) {
+                    d[i * stride + j] = (int) Math.min(value, INF);
+                }
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Floyd–Warshall por bloques en el mismo arreglo.
+     *
+     * @param d      Matriz plana stride × stride, con stride múltiplo de BLOCK_SIZE.
+     * @param stride Lado de la matriz.
+     * @param mode   Núcleo y paralelismo a usar.
+     */
+    static void solve(int[] d, int stride, Mode mode) {
+        MinPlusKernel kernel = mode == Mode.VECTOR && VECTOR_KERNEL != null ? VECTOR_KERNEL : SCALAR_KERNEL;
+        boolean parallel = mode != Mode.SCALAR;
+        int blocks = stride / BLOCK_SIZE;
+
+        for (int diagonal = 0; diagonal < blocks; diagonal++) {
+            int kb = diagonal;
+            int k0 = kb * BLOCK_SIZE;
+            // Fase 1: bloque diagonal
+            kernel.relax(d, stride, k0, k0, k0, BLOCK_SIZE);
+
+            // Fase 2: bloques de la fila y de la columna kb (2 * (blocks - 1) tareas independientes)
+            IntStream phase2 = IntStream.range(0, 2 * blocks);
+            (parallel ? phase2.parallel() : phase2).forEach(t -> {
+                int b = t >> 1;
+                if (b == kb) return;
+                int other = b * BLOCK_SIZE;
+                if ((t & 1) == 0) {
+                    kernel.relax(d, stride, k0, other, k0, BLOCK_SIZE);
+                } else {
+                    kernel.relax(d, stride, other, k0, k0, BLOCK_SIZE);
+                }
+            });
+
+            // Fase 3: resto de bloques, uno por tarea
+            IntStream phase3 = IntStream.range(0, blocks * blocks);
+            (parallel ? phase3.parallel() : phase3).forEach(t -> {
+                int ib = t / blocks;
+                int jb = t % blocks;
+                if (ib == kb || jb == kb) return;
+                kernel.relax(d, stride, ib * BLOCK_SIZE, jb * BLOCK_SIZE, k0, BLOCK_SIZE);
+            });
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.odiparpack.simulation.route;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compara los modos de BlockedFloydWarshall (escalar, escalar en paralelo y vectorial) sobre grafos aleatorios
+ * del tamaño indicado y verifica que todos den la misma matriz.
+ * <p>
+ * Se compila solo con el perfil benchmark ({@code mvn -Pbenchmark compile}), que agrega src/benchmark/java y el
+ * módulo jdk.incubator.vector. Uso: {@code java --add-modules jdk.incubator.vector -cp target/classes
+ * com.odiparpack.simulation.route.FloydWarshallBenchmark [nodos ...]}; sin argumentos mide 1000, 2000 y 3000
+ * nodos. Sin --add-modules el modo vectorial cae al escalar.
+ */
+public final class FloydWarshallBenchmark {
+    private static final int WARMUP_SIZE = 256;
+    private static final int AVERAGE_DEGREE = 36; // Como el grafo de provincias
+
+    private FloydWarshallBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{1000, 2000, 3000}
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        System.out.printf("Vector API: %s, procesadores: %d, bloque: %d%n",
+                BlockedFloydWarshall.isVectorAvailable() ? "sí" : "no",
+                Runtime.getRuntime().availableProcessors(), BlockedFloydWarshall.BLOCK_SIZE);
+
+        // Calentamiento para que el JIT compile los núcleos antes de medir
+        long[][] warmup = randomGraph(WARMUP_SIZE, 1L);
+        for (int round = 0; round < 5; round++) {
+            for (BlockedFloydWarshall.Mode mode : BlockedFloydWarshall.Mode.values()) {
+                BlockedFloydWarshall.shortestTimes(warmup, mode);
+            }
+        }
+
+        for (int n : sizes) {
+            long[][] graph = randomGraph(n, n);
+            int stride = BlockedFloydWarshall.paddedSize(n);
+            int[] reference = null;
+            StringBuilder line = new StringBuilder(String.format("n=%5d", n));
+            for (BlockedFloydWarshall.Mode mode : BlockedFloydWarshall.Mode.values()) {
+                int[] d = BlockedFloydWarshall.toFlat(graph, stride);
+                long startNanos = System.nanoTime();
+                BlockedFloydWarshall.solve(d, stride, mode);
+                long millis = (System.nanoTime() - startNanos) / 1_000_000;
+                if (reference == null) {
+                    reference = d;
+                } else if (!Arrays.equals(reference, d)) {
+                    throw new IllegalStateException("El modo " + mode + " no coincide con SCALAR para n=" + n);
+                }
+                line.append(String.format("  %s: %d ms", mode, millis));
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Grafo aleatorio conexo y simétrico: un camino que recorre todos los nodos más tramos al azar hasta el
+     * grado promedio indicado, con tiempos de 30 a 1500 minutos.
+     */
+    private static long[][] randomGraph(int n, long seed) {
+        Random random = new Random(seed);
+        long[][] matrix = new long[n][n];
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(matrix[i], Long.MAX_VALUE);
+            matrix[i][i] = 0;
+        }
+        int edges = n * AVERAGE_DEGREE / 2;
+        for (int e = 0; e < edges; e++) {
+            int u = e < n - 1 ? e : random.nextInt(n);
+            int v = e < n - 1 ? e + 1 : random.nextInt(n);
+            if (u == v) continue;
+            long minutes = 30 + random.nextInt(1471);
+            matrix[u][v] = minutes;
+            matrix[v][u] = minutes;
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,38 @@
+package com.odiparpack.simulation.route;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Núcleo min-plus de BlockedFloydWarshall con la Vector API: d[i][k] se replica en todos los carriles y se
+ * procesan SPECIES.length() columnas j por instrucción. Es la única clase que depende de jdk.incubator.vector;
+ * BlockedFloydWarshall la carga por nombre solo si el módulo está presente.
+ */
+final class VectorMinPlusKernel implements BlockedFloydWarshall.MinPlusKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    VectorMinPlusKernel() {
+        if (BlockedFloydWarshall.BLOCK_SIZE % SPECIES.length() != 0) {
+            throw new IllegalStateException("El bloque no es múltiplo del ancho del vector: " + SPECIES.length());
+        }
+    }
+
+    @Override
+    public void relax(int[] d, int stride, int i0, int j0, int k0, int size) {
+        int lanes = SPECIES.length();
+        for (int k = k0; k < k0 + size; k++) {
+            int rowK = k * stride;
+            for (int i = i0; i < i0 + size; i++) {
+                int rowI = i * stride;
+                int dik = d[rowI + k];
+                if (dik >= BlockedFloydWarshall.INF) continue;
+                IntVector viaK = IntVector.broadcast(SPECIES, dik);
+                for (int j = j0; j < j0 + size; j += lanes) {
+                    IntVector current = IntVector.fromArray(SPECIES, d, rowI + j);
+                    IntVector candidate = viaK.add(IntVector.fromArray(SPECIES, d, rowK + j));
+                    current.min(candidate).intoArray(d, rowI + j);
+                }
+            }
+        }
+    }
+}
@@ -1,10 +1,27 @@
 package com.odiparpack;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.odiparpack.models.*;
+import com.odiparpack.simulation.route.AllPairsTable;
+import com.odiparpack.simulation.route.ContractionHierarchy;
+import com.odiparpack.simulation.route.KShortestPaths;
+import com.odiparpack.simulation.route.LandmarkTable;
+import com.odiparpack.simulation.route.OverlayGraph;
+import com.odiparpack.simulation.route.RoadGraph;
+import com.odiparpack.simulation.route.RouteCacheWarmup;
+import com.odiparpack.simulation.route.ShortestPathEngine;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -12,12 +29,25 @@ import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 import static com.odiparpack.Main.logger;
+import static com.odiparpack.Main.metricRegistry;
 
 public class DataLoader {
     private static final double TIME_UNIT = 60000.0; // 1 minuto en milisegundos
+    // Por encima de este tamaño la tabla de todos los pares no cabe en memoria y se usa Contraction Hierarchies
+    private static final int ALL_PAIRS_MAX_NODES = 3000;
+    private static final String CONTRACTION_HIERARCHY_FILE = "cache/contraction_hierarchy.ser";
+    private static final String ALL_PAIRS_FILE = "cache/all_pairs.bin";
+    private static final String ROUTE_CACHE_FILE = "cache/route_cache.bin";
+    // Landmarks para las cotas ALT de A*: más landmarks ajustan mejor las cotas a costa de memoria (4 bytes por nodo)
+    private static final int LANDMARK_COUNT = 12;
+    // Hilos del precalentamiento de rutas: deja al menos un núcleo libre para el servidor y la simulación
+    private static final int ROUTE_WARMUP_THREADS = Math.max(1, Math.min(4,
+            Runtime.getRuntime().availableProcessors() - 1));
     // Mapa que relaciona ubigeos con nombres de ubicaciones
     public static Map<String, String> ubigeoToNameMap = new HashMap<>();
     // Mapa que relaciona nombres de ubicaciones con ubigeos
@@ -292,31 +322,243 @@ public class DataLoader {
         return timeMatrix;
     }*/
 
-    public long[][] createTimeMatrix(List<Location> locations, List<Edge> edges) {
-        int n = locations.size();
-        long[][] timeMatrix = new long[n][n];
+    /**
+     * Construye el grafo CSR de tramos, compartido en solo lectura por el enrutamiento. Los índices de los
+     * nodos siguen el orden de la lista de ubicaciones, igual que la matriz de tiempos.
+     *
+     * @param locations Lista de ubicaciones.
+     * @param edges     Tramos cargados con loadEdges.
+     * @return Grafo con tiempos en minutos y distancias en km por arco.
+     */
+    public RoadGraph createRoadGraph(List<Location> locations, List<Edge> edges) {
+        return RoadGraph.build(locations, edges);
+    }
 
-        // Inicializar la matriz con valores muy grandes
-        for (int i = 0; i < n; i++) {
-            Arrays.fill(timeMatrix[i], Long.MAX_VALUE);
-            timeMatrix[i][i] = 0; // Distancia a sí mismo es 0
+    /**
+     * Matriz de tiempos de tramos directos (Long.MAX_VALUE donde no hay tramo), generada desde el grafo CSR.
+     */
+    public long[][] createTimeMatrix(RoadGraph roadGraph) {
+        long[][] timeMatrix = roadGraph.toTimeMatrix();
+
+        // Log para imprimir la cantidad de nodos (locations)
+        logger.info("Cantidad total de nodos (locations): " + roadGraph.nodeCount());
+
+        return timeMatrix;
+    }
+
+    /**
+     * Obtiene los caminos mínimos entre todos los pares a partir de la matriz de tramos directos y publica su
+     * tiempo de construcción (o de carga) y memoria como métricas. La tabla se mapea desde disco si el archivo
+     * corresponde a los mismos archivos de ubicaciones y tramos; si no, se calcula y se guarda.
+     *
+     * @param timeMatrix    Matriz de tiempos de tramos directos.
+     * @param locationsFile Archivo de ubicaciones con el que se construyó la matriz.
+     * @param edgesFile     Archivo de tramos con el que se construyó la matriz.
+     * @return Tabla de todos los pares con siguiente salto y predecesor, o null si el grafo es demasiado grande.
+     */
+    public AllPairsTable createAllPairsTable(long[][] timeMatrix, String locationsFile, String edgesFile) {
+        if (timeMatrix.length > ALL_PAIRS_MAX_NODES) {
+            logger.info("El grafo tiene " + timeMatrix.length + " nodos; no se construye la tabla de todos los pares.");
+            return null;
+        }
+        AllPairsTable table;
+        try {
+            long key = hashFiles(Paths.get(locationsFile), Paths.get(edgesFile));
+            table = AllPairsTable.loadOrBuild(Paths.get(ALL_PAIRS_FILE), timeMatrix, key);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "No se pudieron leer los archivos de entrada para la tabla de todos los pares", e);
+            table = AllPairsTable.build(timeMatrix);
         }
+        table.registerMetrics(metricRegistry);
+        return table;
+    }
 
-        // Llenar la matriz solo con los tiempos de viaje conocidos
-        for (Edge edge : edges) {
-            int fromIndex = getLocationIndex(locations, edge.getOriginUbigeo());
-            int toIndex = getLocationIndex(locations, edge.getDestinationUbigeo());
-            if (fromIndex != -1 && toIndex != -1) {
-                long travelTime = (long) (edge.getTravelTime() * 60); // Convertir horas a minutos
-                timeMatrix[fromIndex][toIndex] = travelTime;
-                timeMatrix[toIndex][fromIndex] = travelTime; // Asumiendo que el viaje es bidireccional
+    /**
+     * @return Primeros 8 bytes del SHA-256 del contenido de los archivos, en orden.
+     */
+    private static long hashFiles(Path... files) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Path file : files) {
+                digest.update(Files.readAllBytes(file));
             }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
         }
+    }
 
-        // Log para imprimir la cantidad de nodos (locations)
-        logger.info("Cantidad total de nodos (locations): " + n);
+    /**
+     * Carga o construye el índice de Contraction Hierarchies del grafo de tramos. El índice se guarda en disco
+     * y solo se reconstruye cuando cambian las ubicaciones o los tramos.
+     *
+     * @param roadGraph Grafo CSR de tramos.
+     * @return Índice para consultas punto a punto, uno a muchos y muchos a muchos.
+     */
+    public ContractionHierarchy createContractionHierarchy(RoadGraph roadGraph) {
+        return ContractionHierarchy.loadOrBuild(Paths.get(CONTRACTION_HIERARCHY_FILE), roadGraph);
+    }
 
-        return timeMatrix;
+    /**
+     * Construye el overlay multinivel (celdas por departamento y región natural) y personaliza la métrica sin
+     * bloqueos. Los cambios de bloqueos solo recalculan las celdas afectadas (OverlayGraph.applyBlockages).
+     *
+     * @param roadGraph Grafo CSR de tramos, sin bloqueos.
+     * @param locations Ubicaciones del grafo.
+     * @return Overlay para consultas exactas con bloqueos.
+     */
+    public OverlayGraph createOverlayGraph(RoadGraph roadGraph, Collection<Location> locations) {
+        OverlayGraph overlayGraph = OverlayGraph.build(roadGraph, locations);
+        String memoryName = MetricRegistry.name(OverlayGraph.class, "memoryBytes");
+        metricRegistry.remove(memoryName);
+        metricRegistry.register(memoryName, (Gauge<Long>) overlayGraph::getMemoryBytes);
+        return overlayGraph;
+    }
+
+    /**
+     * Elige los landmarks por selección del punto más lejano y calcula en paralelo las distancias desde cada uno.
+     *
+     * @param roadGraph Grafo CSR de tramos, sin bloqueos.
+     * @return Tabla de cotas ALT; sigue siendo válida cuando se bloquean tramos.
+     */
+    public LandmarkTable createLandmarkTable(RoadGraph roadGraph) {
+        return LandmarkTable.build(roadGraph, LANDMARK_COUNT);
+    }
+
+    /**
+     * Pares frecuentes por defecto: de cada almacén principal a cada capital de departamento (ubigeo DD0101).
+     *
+     * @param warehouseUbigeos Ubigeos de los almacenes principales.
+     * @param ubigeos          Ubigeos de todas las ubicaciones.
+     * @return Pares {origen, destino}.
+     */
+    public static List<String[]> warehouseToCapitalPairs(Collection<String> warehouseUbigeos, List<String> ubigeos) {
+        List<String[]> pairs = new ArrayList<>();
+        for (String warehouse : warehouseUbigeos) {
+            for (String ubigeo : ubigeos) {
+                if (ubigeo.endsWith("0101") && !ubigeo.equals(warehouse)) {
+                    pairs.add(new String[]{warehouse, ubigeo});
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Precalcula las k rutas sin ciclos más cortas (algoritmo de Yen, sin bloqueos) de cada par frecuente y las
+     * guarda en la caché, para que un bloqueo sobre la ruta principal se resuelva con la siguiente alternativa
+     * válida en vez de volver a resolver. Publica el número de pares y la memoria estimada como métricas.
+     *
+     * @param routeCache    Caché de rutas donde se guardan las alternativas.
+     * @param roadGraph     Grafo CSR de tramos.
+     * @param locationNames Nombres de ubicaciones en el orden de los nodos del grafo.
+     * @param hotPairs      Pares {origen, destino} a precalcular.
+     * @param k             Número máximo de alternativas por par.
+     */
+    public void precomputeAlternativeRoutes(RouteCache routeCache, RoadGraph roadGraph, List<String> locationNames,
+                                            List<String[]> hotPairs, int k) {
+        long startNanos = System.nanoTime();
+        int routeCount = 0;
+        for (String[] pair : hotPairs) {
+            int from = roadGraph.indexOf(pair[0]);
+            int to = roadGraph.indexOf(pair[1]);
+            if (from < 0 || to < 0) {
+                logger.warning("Par frecuente con ubigeo desconocido: " + pair[0] + " -> " + pair[1]);
+                continue;
+            }
+            List<List<RouteSegment>> routes = new ArrayList<>();
+            for (int[] path : KShortestPaths.find(roadGraph, from, to, k)) {
+                routes.add(toRouteSegments(roadGraph, locationNames, path));
+            }
+            routeCache.putAlternatives(pair[0], pair[1], routes);
+            routeCount += routes.size();
+        }
+
+        String pairsName = MetricRegistry.name(RouteCache.class, "alternatives", "pairs");
+        String memoryName = MetricRegistry.name(RouteCache.class, "alternatives", "memoryBytes");
+        metricRegistry.remove(pairsName);
+        metricRegistry.remove(memoryName);
+        metricRegistry.register(pairsName, (Gauge<Integer>) routeCache::getAlternativePairCount);
+        metricRegistry.register(memoryName, (Gauge<Long>) routeCache::getAlternativesMemoryBytes);
+        logger.info(String.format("Rutas alternativas precalculadas: %d rutas para %d pares (k=%d), ~%d KB en %d ms",
+                routeCount, routeCache.getAlternativePairCount(), k, routeCache.getAlternativesMemoryBytes() / 1024,
+                (System.nanoTime() - startNanos) / 1_000_000));
+    }
+
+    /**
+     * Inicia en segundo plano el cálculo de las rutas de cada almacén principal a cada ubicación y publica su
+     * avance como métricas. Retorna de inmediato.
+     * <p>
+     * El cálculo empieza cuando termina preload (ver {@link #loadRouteCacheAsync}): así omite los pares que trae
+     * el archivo en lugar de calcularlos otra vez mientras se cargan y terminar con versiones duplicadas.
+     *
+     * @param preload          Precarga de la caché desde disco; nunca termina con error.
+     * @param routeCache       Caché donde se guardan las rutas.
+     * @param warehouseUbigeos Ubigeos de los almacenes principales.
+     * @param locationUbigeos  Ubigeos en el orden de los nodos del motor.
+     * @param engines          Crea un motor de caminos mínimos por lote.
+     * @return Precalentamiento, disponible en cuanto empieza.
+     */
+    public CompletableFuture<RouteCacheWarmup> warmUpRouteCache(CompletableFuture<Integer> preload,
+                                                                RouteCache routeCache,
+                                                                Collection<String> warehouseUbigeos,
+                                                                List<String> locationUbigeos,
+                                                                Supplier<ShortestPathEngine> engines) {
+        return preload.thenApply(loaded -> {
+            RouteCacheWarmup warmup = RouteCacheWarmup.start(routeCache, warehouseUbigeos, locationUbigeos,
+                    engines, ROUTE_WARMUP_THREADS);
+            warmup.registerMetrics(metricRegistry);
+            return warmup;
+        });
+    }
+
+    /**
+     * Carga en segundo plano las rutas guardadas por {@link #saveRouteCache} para el mismo grafo, de modo que los
+     * primeros ciclos de planificación ya encuentren entradas en la caché. Las consultas pueden empezar antes de
+     * que termine: solo fallan las rutas que aún no se cargaron.
+     *
+     * @param routeCache Caché de rutas a precargar.
+     * @param roadGraph  Grafo cuya huella deben tener las rutas guardadas.
+     * @return Número de versiones cargadas (0 si no hay archivo, corresponde a otro grafo o no se pudo leer). Los
+     * errores se registran aquí y el resultado nunca termina con excepción, así que se puede encadenar o esperar.
+     */
+    public CompletableFuture<Integer> loadRouteCacheAsync(RouteCache routeCache, RoadGraph roadGraph) {
+        Path file = Paths.get(ROUTE_CACHE_FILE);
+        if (!Files.exists(file)) {
+            return CompletableFuture.completedFuture(0);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return routeCache.load(file, roadGraph.getFingerprint());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).exceptionally(error -> {
+            logger.log(Level.WARNING, "No se pudo cargar la caché de rutas desde " + file, error);
+            return 0;
+        });
+    }
+
+    /**
+     * Guarda las rutas en caché junto con la huella del grafo, para reutilizarlas tras un reset o un reinicio.
+     */
+    public void saveRouteCache(RouteCache routeCache, RoadGraph roadGraph) {
+        try {
+            routeCache.save(Paths.get(ROUTE_CACHE_FILE), roadGraph.getFingerprint());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "No se pudo guardar la caché de rutas en " + ROUTE_CACHE_FILE, e);
+        }
+    }
+
+    private static List<RouteSegment> toRouteSegments(RoadGraph roadGraph, List<String> locationNames, int[] path) {
+        List<RouteSegment> route = new ArrayList<>(path.length - 1);
+        for (int i = 0; i < path.length - 1; i++) {
+            int arc = roadGraph.findArc(path[i], path[i + 1]);
+            route.add(new RouteSegment(locationNames.get(path[i]) + " to " + locationNames.get(path[i + 1]),
+                    roadGraph.ubigeo(path[i]), roadGraph.ubigeo(path[i + 1]), roadGraph.distanceKm(arc),
+                    roadGraph.minutes(arc)));
+        }
+        return route;
     }
 
     private void printTimeMatrix(long[][] timeMatrix) {
@@ -333,15 +575,6 @@ public class DataLoader {
         }
     }
 
-    private int getLocationIndex(List<Location> locations, String ubigeo) {
-        for (int i = 0; i < locations.size(); i++) {
-            if (locations.get(i).getUbigeo().equals(ubigeo)) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
     public List<Maintenance> loadMaintenanceSchedule(String filePath) {
         List<Maintenance> maintenances = new ArrayList<>();
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd");
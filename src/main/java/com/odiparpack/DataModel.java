@@ -108,6 +108,14 @@ public class DataModel {
         }
     }
 
+    /**
+     * Indica si el modelo solo contiene pares origen→destino independientes (sin asignaciones),
+     * en cuyo caso cada ruta es simplemente el camino mínimo de su origen a su destino.
+     */
+    public boolean hasIndependentPairs() {
+        return assignments == null;
+    }
+
     public void printTravelTime(String fromUbigeo, String toUbigeo) {
         // Obtener los índices de las ubicaciones en la matriz timeMatrix
         Integer fromIndex = locationIndices.get(fromUbigeo);
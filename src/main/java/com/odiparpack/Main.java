@@ -1,8 +1,11 @@
 package com.odiparpack;
 
 import com.codahale.metrics.ConsoleReporter;
+import com.codahale.metrics.CsvReporter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.jmx.JmxReporter;
 import com.google.ortools.Loader;
 import com.google.ortools.constraintsolver.*;
 import com.odiparpack.models.*;
@@ -13,6 +16,10 @@ import java.lang.management.ManagementFactory;
 
 import com.odiparpack.services.DataService;
 import com.odiparpack.simulation.SimulationEngine;
+import com.odiparpack.simulation.route.AllPairsTable;
+import com.odiparpack.simulation.route.ContractionHierarchy;
+import com.odiparpack.simulation.route.RoadGraph;
+import com.odiparpack.simulation.route.RoutingIndexes;
 import com.odiparpack.simulation.state.SimulationComponents;
 import com.odiparpack.simulation.state.SimulationInitializer;
 import com.odiparpack.simulation.state.SimulationState;
@@ -46,11 +53,16 @@ import java.util.stream.Stream;
 
 public class Main {
     public static final Logger logger = Logger.getLogger(Main.class.getName());
+    public static final MetricRegistry metricRegistry = new MetricRegistry();
     private static final int SIMULATION_DAYS = 7;
     private static final int SIMULATION_SPEED = 10; // 1 minuto de simulación = 1 segundo de tiempo real
     private static final int PLANNING_INTERVAL_MINUTES = 15;
     public static final int ROUTE_CACHE_CAPACITY = 1000;
+    public static final int ALTERNATIVE_ROUTES_K = 3; // Rutas alternativas precalculadas por par frecuente
     private static final int TIME_ADVANCEMENT_INTERVAL_MINUTES = 5; // New variable for time advancement interval
+    private static final String METRICS_CSV_DIRECTORY = "metrics";
+    private static final int METRICS_REPORT_INTERVAL_SECONDS = 60;
+    private static boolean metricReportersStarted = false;
 
     public static RouteCache routeCache;
     public static Map<String, Integer> locationIndices;
@@ -107,18 +119,22 @@ public class Main {
 
     public static void main(String[] args) throws IOException {
         Loader.loadNativeLibraries();
+        startMetricReporters();
 
         DataLoader dataLoader = new DataLoader();
 
         // Cargar datos
-        locations = dataLoader.loadLocations("src/main/resources/locations.txt");
-        List<Edge> edges = dataLoader.loadEdges("src/main/resources/edges.txt", locations);
+        String locationsFile = "src/main/resources/locations.txt";
+        String edgesFile = "src/main/resources/edges.txt";
+        locations = dataLoader.loadLocations(locationsFile);
+        List<Edge> edges = dataLoader.loadEdges(edgesFile, locations);
         List<Vehicle> vehicles = dataLoader.loadVehicles("src/main/resources/vehicles.txt");
         List<Order> orders = dataLoader.loadOrders("src/main/resources/orders.txt", locations);
         List<Blockage> blockages = dataLoader.loadBlockages("src/main/resources/blockages.txt");
         List<Maintenance> maintenanceSchedule = dataLoader.loadMaintenanceSchedule("src/main/resources/maintenance.txt");
 
         routeCache = new RouteCache(ROUTE_CACHE_CAPACITY);
+        routeCache.registerMetrics(metricRegistry);
 
         // Construir índices y matrices
         List<Location> locationList = new ArrayList<>(locations.values());
@@ -129,7 +145,10 @@ public class Main {
             locationIndices.put(locationList.get(i).getUbigeo(), i);
         }
 
-        long[][] timeMatrix = dataLoader.createTimeMatrix(locationList, edges);
+        RoadGraph roadGraph = dataLoader.createRoadGraph(locationList, edges);
+        long[][] timeMatrix = dataLoader.createTimeMatrix(roadGraph);
+        AllPairsTable allPairsTable = dataLoader.createAllPairsTable(timeMatrix, locationsFile, edgesFile);
+        ContractionHierarchy contractionHierarchy = dataLoader.createContractionHierarchy(roadGraph);
 
         List<String> locationNames = new ArrayList<>();
         List<String> locationUbigeos = new ArrayList<>();
@@ -153,12 +172,19 @@ public class Main {
                 locations,
                 routeCache,
                 timeMatrix,
+                RoutingIndexes.builder()
+                        .roadGraph(roadGraph)
+                        .allPairsTable(allPairsTable)
+                        .contractionHierarchy(contractionHierarchy)
+                        .build(),
                 blockages,
                 maintenanceSchedule,
                 locationIndices,
                 locationNames,
                 locationUbigeos
         );
+        // Guardar la caché de rutas vigente (la del último reset) al terminar
+        Runtime.getRuntime().addShutdownHook(new Thread(simulationState::saveRouteCache, "route-cache-save"));
 
         // Iniciar el servidor SimulationController
         SimulationController simulationController = new SimulationController(simulationState);
@@ -167,6 +193,40 @@ public class Main {
         // El método main termina aquí
     }
 
+    /**
+     * Publica las métricas de metricRegistry por JMX (dominio com.odiparpack) y, cada
+     * METRICS_REPORT_INTERVAL_SECONDS, en un CSV por métrica dentro de METRICS_CSV_DIRECTORY.
+     * Solo la primera llamada inicia los reporteros.
+     */
+    public static synchronized void startMetricReporters() {
+        if (metricReportersStarted) {
+            return;
+        }
+        metricReportersStarted = true;
+
+        JmxReporter.forRegistry(metricRegistry)
+                .inDomain("com.odiparpack")
+                .convertRatesTo(TimeUnit.SECONDS)
+                .convertDurationsTo(TimeUnit.MILLISECONDS)
+                .build()
+                .start();
+
+        File csvDirectory = new File(METRICS_CSV_DIRECTORY);
+        if (!csvDirectory.isDirectory() && !csvDirectory.mkdirs()) {
+            logger.warning("No se pudo crear el directorio de métricas " + csvDirectory.getAbsolutePath()
+                    + "; solo se publicarán por JMX");
+            return;
+        }
+        CsvReporter.forRegistry(metricRegistry)
+                .formatFor(Locale.US)
+                .convertRatesTo(TimeUnit.SECONDS)
+                .convertDurationsTo(TimeUnit.MILLISECONDS)
+                .build(csvDirectory)
+                .start(METRICS_REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        logger.info("Métricas publicadas por JMX y en " + csvDirectory.getAbsolutePath() + " cada "
+                + METRICS_REPORT_INTERVAL_SECONDS + " s");
+    }
+
     // Función para encontrar archivos por patrón
     private static List<Path> findFilesByPattern(String pattern) throws IOException {
         Path dir = Paths.get("."); // Directorio actual
@@ -744,7 +804,10 @@ public class Main {
             RoutingModel routing = createRoutingModel(manager, data);
             RoutingSearchParameters searchParameters = createSearchParameters(strategy);
 
-            Assignment solution = routing.solveWithParameters(searchParameters);
+            Assignment solution;
+            try (Timer.Context ignored = metricRegistry.timer(MetricRegistry.name(Main.class, "solveSubset")).time()) {
+                solution = routing.solveWithParameters(searchParameters);
+            }
 
             if (solution != null) {
                 logger.info("Solución encontrada para el subconjunto con estrategia: " + strategy);
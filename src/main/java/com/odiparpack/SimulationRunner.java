@@ -508,6 +508,11 @@ public class SimulationRunner {
             Vehicle vehicle = assignment.getVehicle();
             List<RouteSegment> route = allRoutes.get(vehicle.getCode());
             if (route != null) {
+                if (state != null) {
+                    // Evitar tramos que se bloquearán antes de que el vehículo llegue a ellos
+                    route = state.getTimeDependentRouter().adjustRoute(route, state.getCurrentTime());
+                    allRoutes.put(vehicle.getCode(), route);
+                }
                 vehicle.setRoute(route);
                 if (state != null) {
                     vehicle.startJourney(state.getCurrentTime(), assignment.getOrder());
@@ -1,201 +1,1280 @@
 package com.odiparpack.models;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.odiparpack.simulation.blockage.BlockageSnapshot;
+import com.odiparpack.simulation.route.RoadGraph;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
 
 import static com.odiparpack.Main.logger;
 
+/**
+ * Caché de rutas compartida por el hilo de planificación, los hilos de reruteo de VehicleManager y la tarea de
+ * avance del tiempo.
+ * <p>
+ * Las lecturas no bloquean: el mapa es concurrente y las versiones de cada par se reemplazan completas. La
+ * política de desalojo es W-TinyLFU: las claves nuevas entran en una ventana LRU pequeña (1 % de la capacidad)
+ * y, al salir de ella, solo pasan a la zona principal (SLRU con segmentos de prueba y protegido) si su frecuencia
+ * estimada supera a la de la víctima de la zona principal. Así, un reruteo puntual por avería no desplaza a las
+ * rutas hacia almacenes que se piden a cada rato. Todas las operaciones de la política son O(1); los accesos
+ * de lectura se anotan en un buffer con pérdida y se aplican cuando alguien obtiene el lock de la política.
+ * <p>
+ * La validez frente a bloqueos se mantiene con un índice invertido tramo → versiones que lo recorren: cada
+ * versión cuenta cuántos de sus tramos están bloqueados y {@link #applyBlockages} solo ajusta las versiones de
+ * los tramos que cambiaron. Consultar una versión es revisar ese contador, sin importar cuántos bloqueos haya.
+ * <p>
+ * Cada versión guarda la ruta compacta: un int[] con los identificadores de sus tramos en una tabla compartida
+ * (ubigeos, nombre y distancia de cada tramo dirigido) y un int[] con la duración de cada tramo, que depende del
+ * ruteador. getRoute devuelve una vista de solo lectura sobre esos arreglos, hacia adelante o invertida, sin
+ * copiarlos; los RouteSegment se crean recién al leer cada posición, por ejemplo al copiarla Vehicle.setRoute.
+ * <p>
+ * {@link #save} y {@link #load} persisten las versiones en un archivo binario asociado a la huella del grafo,
+ * para que un reinicio o un reset no vuelvan a resolver las mismas rutas. Cada versión guarda el conjunto de
+ * bloqueos con que se calculó; al cargarla, su validez se decide con los bloqueos vigentes.
+ * <p>
+ * También recuerda los pares sin ruta ({@link #markUnreachable}) junto con la época de bloqueos en que se
+ * comprobó. Bloquear más tramos no puede abrir un camino, así que la respuesta negativa vale hasta que se
+ * desbloquee algún tramo; mientras tanto {@link #isUnreachable} evita repetir la misma búsqueda o resolución.
+ * <p>
+ * El resultado de cada getRoute con acierto se recuerda por par, con la época de bloqueos en que se eligió. La
+ * siguiente consulta del par es una sola búsqueda en ese mapa: la elección sigue siendo la mejor mientras no se
+ * haya desbloqueado ningún tramo desde esa época (ninguna otra versión pudo volverse válida) y la versión elegida
+ * siga válida y en la caché. Así, en un cambio de época que solo agrega bloqueos, los pares cuyas rutas no tocan
+ * los tramos que cambiaron siguen usando su elección sin volver a revisar las versiones.
+ */
 public class RouteCache {
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int MAX_VERSIONS_PER_ROUTE = 5;
+
+    // Archivo: cabecera (MAGIC, FORMAT_VERSION, huella del grafo), tabla de tramos, conjuntos de bloqueos y
+    // entradas de la más usada a la menos usada, en big-endian
+    private static final int MAGIC = 0x4F445243; // "ODRC"
+    private static final int FORMAT_VERSION = 1;
+
     private final int capacity;
-    private final Map<String, List<VersionedRoute>> cache;
-    private final Queue<String> lruQueue;
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    private final ConcurrentHashMap<String, CacheEntry> cache;
+    // Rutas alternativas precalculadas para pares frecuentes, ordenadas por duración; no se desalojan
+    private final Map<String, List<VersionedRoute>> alternatives;
+
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final ArrayBlockingQueue<String> readBuffer = new ArrayBlockingQueue<>(READ_BUFFER_SIZE);
+    private final FrequencySketch sketch;
+    private final AccessOrder window = new AccessOrder(Segment.WINDOW);
+    private final AccessOrder probation = new AccessOrder(Segment.PROBATION);
+    private final AccessOrder protectedSegment = new AccessOrder(Segment.PROTECTED);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // Métricas acumuladas desde la creación; no se reinician con clear()
+    private final Meter hitMeter = new Meter();
+    private final Meter missMeter = new Meter();
+    private final Meter reverseHitMeter = new Meter();
+    private final Meter blockedMissMeter = new Meter();
+    private final Meter evictionMeter = new Meter();
+    private final Meter unreachableHitMeter = new Meter();
+
+    // Tabla compartida de tramos dirigidos; se agregan solo con policyLock y el arreglo se publica completo
+    private final Map<Edge, Integer> edgeIds = new HashMap<>();
+    private volatile Edge[] edgeTable = new Edge[64];
+    private int edgeCount;
+    // Conjuntos de bloqueos (descriptores ordenados) con que se calcularon las versiones; se agregan con policyLock
+    private final Map<List<String>, Integer> blockageSetIds = new HashMap<>();
+    private final List<List<String>> blockageSets = new CopyOnWriteArrayList<>();
+    // Identificadores de tramo sin sentido (los bloqueos son bidireccionales); solo con policyLock
+    private final Map<String, Integer> roadIds = new HashMap<>();
+
+    // Índice invertido tramo sin sentido → versiones que lo recorren; solo con policyLock
+    private final List<Set<VersionedRoute>> routesByRoad = new ArrayList<>();
+    private volatile BitSet blockedRoads = new BitSet(); // Se reemplaza completo, nunca se modifica
+    // Bloqueos de la última sincronización (por identidad), para detectar cambios en getRoute con bloqueos
+    private volatile Set<Blockage> syncedBlockages = Collections.emptySet();
+    // Época de bloqueos: sube con cada cambio del conjunto de tramos bloqueados
+    private volatile long blockageEpoch;
+    // Época del último cambio que desbloqueó algún tramo: las respuestas negativas anteriores ya no valen
+    private volatile long releaseEpoch;
+    // Pares origen-destino sin ruta → época de bloqueos en que se comprobó
+    private final ConcurrentHashMap<String, Long> unreachable = new ConcurrentHashMap<>();
+    // Última elección de getRoute por par consultado (clave en el sentido de la consulta)
+    private final ConcurrentHashMap<String, ResolvedRoute> resolvedRoutes = new ConcurrentHashMap<>();
+    // Generación por par sin sentido: sube con cada cambio de sus versiones o alternativas. No se vacía en clear()
+    // para que una elección calculada antes nunca coincida con la generación siguiente
+    private final ConcurrentHashMap<String, Long> pairGenerations = new ConcurrentHashMap<>();
 
     public RouteCache(int capacity) {
-        this.capacity = capacity;
-        this.cache = new HashMap<>();
-        this.lruQueue = new LinkedList<>();
+        this.capacity = Math.max(1, capacity);
+        this.windowCapacity = Math.max(1, this.capacity / 100);
+        this.protectedCapacity = (this.capacity - windowCapacity) * 4 / 5;
+        this.cache = new ConcurrentHashMap<>();
+        this.alternatives = new ConcurrentHashMap<>();
+        this.sketch = new FrequencySketch(this.capacity);
+        blockageSetIds.put(Collections.emptyList(), 0);
+        blockageSets.add(Collections.emptyList());
     }
 
+    /**
+     * Busca una ruta compatible con los bloqueos indicados. Si difieren de los de la última sincronización, antes
+     * se sincroniza el índice; para quien ya llama a {@link #applyBlockages} al cambiar los bloqueos basta
+     * {@link #getRoute(String, String)}.
+     */
     public List<RouteSegment> getRoute(String from, String to, List<Blockage> activeBlockages) {
+        Set<Blockage> synced = syncedBlockages;
+        if (synced.size() != activeBlockages.size() || !synced.containsAll(activeBlockages)) {
+            applyBlockages(activeBlockages);
+        }
+        return getRoute(from, to);
+    }
+
+    /**
+     * Busca una ruta compatible con los bloqueos de la última sincronización ({@link #applyBlockages}).
+     *
+     * @return La ruta más corta entre las versiones en caché y las alternativas válidas, o null si no hay.
+     */
+    public List<RouteSegment> getRoute(String from, String to) {
         String directKey = from + "-" + to;
         String reverseKey = to + "-" + from;
 
-        logger.info("Buscando ruta para " + from + " a " + to);
-        logger.info("Bloqueos activos: " + activeBlockages);
+        String pairKey = pairKey(from, to);
+
+        ResolvedRoute resolved = resolvedRoutes.get(directKey);
+        if (resolved != null && resolved.isCurrent(releaseEpoch, generation(pairKey))) {
+            recordAccess(resolved.accessKey);
+            hits.increment();
+            hitMeter.mark();
+            if (resolved.reversed) {
+                reverseHitMeter.mark();
+            }
+            return new RouteView(resolved.version, edgeTable, resolved.reversed);
+        }
+        // Época y generación leídas antes de revisar las versiones: si cambian durante la revisión, la elección
+        // queda vencida
+        long epoch = blockageEpoch;
+        long generation = generation(pairKey);
 
-        List<RouteSegment> route = null;
+        // Las consultas que no resuelve la memoización son frecuentes: la traza va en FINE y se arma solo si se
+        // va a publicar
+        logger.fine(() -> "Buscando ruta para " + from + " a " + to + ", tramos bloqueados: "
+                + blockedRoads.cardinality());
+
+        VersionedRoute route = null;
+        boolean reversed = false;
         String key = null;
+        CacheEntry directEntry = cache.get(directKey);
+        CacheEntry reverseEntry = directEntry == null ? cache.get(reverseKey) : null;
 
-        if (cache.containsKey(directKey)) {
-            logger.info("Encontradas versiones de ruta directa en caché para " + directKey);
-            printCachedVersions(directKey);
-            route = getBestCompatibleRoute(cache.get(directKey), activeBlockages);
+        if (directEntry != null) {
+            logger.fine(() -> "Encontradas versiones de ruta directa en caché para " + directKey);
+            List<VersionedRoute> versions = directEntry.versions;
+            printCachedVersions(directKey, versions);
+            route = getBestCompatibleRoute(versions);
             key = directKey;
-        } else if (cache.containsKey(reverseKey)) {
-            logger.info("Encontradas versiones de ruta inversa en caché para " + reverseKey);
-            printCachedVersions(reverseKey);
-            List<RouteSegment> reverseRoute = getBestCompatibleRoute(cache.get(reverseKey), activeBlockages);
-            if (reverseRoute != null) {
-                route = reverseRoute(reverseRoute);
+        } else if (reverseEntry != null) {
+            logger.fine(() -> "Encontradas versiones de ruta inversa en caché para " + reverseKey);
+            List<VersionedRoute> versions = reverseEntry.versions;
+            printCachedVersions(reverseKey, versions);
+            route = getBestCompatibleRoute(versions);
+            if (route != null) {
+                reversed = true;
                 key = reverseKey;
             }
         } else {
-            logger.info("No se encontraron rutas en caché para " + directKey + " ni " + reverseKey);
+            logger.fine(() -> "No se encontraron rutas en caché para " + directKey + " ni " + reverseKey);
         }
 
+        // Si hay alternativas precalculadas, la primera válida es la más corta que evita los bloqueos activos
+        VersionedRoute alternative = getFirstValidAlternative(directKey);
+        boolean alternativeReversed = false;
+        if (alternative == null) {
+            alternative = getFirstValidAlternative(reverseKey);
+            alternativeReversed = alternative != null;
+        }
+        if (alternative != null && (route == null || alternative.getTotalDuration() < route.getTotalDuration())) {
+            logger.fine(() -> "Usando ruta alternativa precalculada para " + directKey);
+            route = alternative;
+            reversed = alternativeReversed;
+        }
+
+        // TinyLFU cuenta todas las solicitudes, también los fallos, para estimar la frecuencia de cada par
+        String accessKey = key != null ? key : directKey;
+        recordAccess(accessKey);
         if (route != null) {
-            logger.info("Ruta compatible encontrada. Actualizando LRU para " + key);
-            updateLRU(key);
-            logger.info("Ruta seleccionada: " + routeToString(route));
-            return route;
+            // Solo se publica si ningún putRoute/putAlternatives del par cambió sus versiones mientras se elegía
+            ResolvedRoute choice = new ResolvedRoute(route, reversed, accessKey, epoch, generation);
+            resolvedRoutes.compute(directKey,
+                    (k, previous) -> generation(pairKey) == generation ? choice : previous);
+            hits.increment();
+            hitMeter.mark();
+            if (reversed) {
+                reverseHitMeter.mark();
+            }
+            RouteView view = new RouteView(route, edgeTable, reversed);
+            logger.fine(() -> "Ruta seleccionada: " + view);
+            return view;
         }
 
-        logger.info("No se encontró ninguna ruta compatible en caché.");
+        misses.increment();
+        missMeter.mark();
+        if (directEntry != null || reverseEntry != null
+                || alternatives.containsKey(directKey) || alternatives.containsKey(reverseKey)) {
+            // Había rutas para el par, pero todas recorren algún tramo bloqueado
+            blockedMissMeter.mark();
+        }
+        logger.fine("No se encontró ninguna ruta compatible en caché.");
         return null;
     }
 
-    private void printCachedVersions(String key) {
-        List<VersionedRoute> versions = cache.get(key);
-        logger.info("Versiones de ruta en caché para " + key + ":");
+    private void printCachedVersions(String key, List<VersionedRoute> versions) {
+        // Formatear cada versión arma la ruta completa: solo vale la pena si FINE está habilitado
+        if (!logger.isLoggable(Level.FINE)) {
+            return;
+        }
+        logger.fine("Versiones de ruta en caché para " + key + ":");
         for (int i = 0; i < versions.size(); i++) {
             VersionedRoute vr = versions.get(i);
-            logger.info("Versión " + (i + 1) + ":");
-            logger.info("  Duración total: " + vr.getTotalDuration() + " minutos");
-            logger.info("  Bloqueos activos cuando se creó: " + blockagesToString(vr.getActiveBlockages()));
-            logger.info("  Ruta: " + routeToString(vr.getRoute()));
+            logger.fine("Versión " + (i + 1) + ":");
+            logger.fine("  Duración total: " + vr.getTotalDuration() + " minutos");
+            // Solo el número: formatear la lista haría crecer cada consulta con la cantidad de bloqueos
+            logger.fine("  Bloqueos activos cuando se creó: " + blockageSets.get(vr.getBlockageSet()).size());
+            logger.fine("  Ruta: " + new RouteView(vr, edgeTable, false));
         }
     }
 
-    private String blockagesToString(Collection<Blockage> blockages) {
-        if (blockages == null || blockages.isEmpty()) {
-            return "[]";
+    private VersionedRoute getBestCompatibleRoute(List<VersionedRoute> versionedRoutes) {
+        return versionedRoutes.stream()
+                .filter(VersionedRoute::isValid)
+                .min(Comparator.comparingLong(VersionedRoute::getTotalDuration))
+                .orElse(null);
+    }
+
+    private VersionedRoute getFirstValidAlternative(String key) {
+        List<VersionedRoute> candidates = alternatives.get(key);
+        if (candidates == null) {
+            return null;
+        }
+        for (VersionedRoute candidate : candidates) {
+            if (candidate.isValid()) {
+                return candidate;
+            }
         }
-        return blockages.stream()
-                .map(Blockage::toString)
-                .collect(Collectors.joining(", ", "[", "]"));
+        return null;
     }
 
-    private String routeToString(List<RouteSegment> route) {
-        StringBuilder sb = new StringBuilder();
-        for (RouteSegment segment : route) {
-            if (sb.length() > 0) sb.append(" -> ");
-            sb.append(segment.getName());
+    /**
+     * Sincroniza el índice con los bloqueos activos: solo se ajustan las versiones que recorren tramos que se
+     * bloquearon o desbloquearon desde la última sincronización. Los bloqueos se consideran bidireccionales.
+     */
+    public void applyBlockages(Collection<Blockage> activeBlockages) {
+        policyLock.lock();
+        try {
+            BitSet current = new BitSet();
+            for (Blockage blockage : activeBlockages) {
+                current.set(roadId(blockage.getOriginUbigeo(), blockage.getDestinationUbigeo()));
+            }
+            syncBlockedRoads(current, activeBlockages);
+        } finally {
+            policyLock.unlock();
         }
-        return sb.toString();
     }
 
-    private List<RouteSegment> getBestCompatibleRoute(List<VersionedRoute> versionedRoutes, List<Blockage> activeBlockages) {
-        return versionedRoutes.stream()
-                .filter(vr -> isRouteValid(vr.getRoute(), activeBlockages))
-                .min(Comparator.comparingLong(VersionedRoute::getTotalDuration))
-                .map(VersionedRoute::getRoute)
-                .orElse(null);
+    /**
+     * Igual que {@link #applyBlockages(Collection)}, pero tomando los tramos bloqueados de los arcos de la vista
+     * publicada por BlockageManager.
+     */
+    public void applyBlockages(BlockageSnapshot blockages) {
+        RoadGraph graph = blockages.getGraph();
+        policyLock.lock();
+        try {
+            BitSet current = new BitSet();
+            for (int arc = blockages.nextBlockedArc(0); arc >= 0; arc = blockages.nextBlockedArc(arc + 1)) {
+                current.set(roadId(graph.ubigeo(graph.source(arc)), graph.ubigeo(graph.target(arc))));
+            }
+            syncBlockedRoads(current, blockages.getBlockages());
+        } finally {
+            policyLock.unlock();
+        }
     }
 
-    private boolean isRouteValid(List<RouteSegment> route, List<Blockage> activeBlockages) {
-        for (RouteSegment segment : route) {
-            for (Blockage blockage : activeBlockages) {
-                String[] locations = segment.getName().split(" to ");
-                String fromUbigeo = locations[0];
-                String toUbigeo = segment.getUbigeo();
+    /**
+     * Ajusta los contadores de las versiones que recorren tramos cuyo estado cambió y publica el conjunto nuevo.
+     * Requiere policyLock.
+     */
+    private void syncBlockedRoads(BitSet current, Collection<Blockage> activeBlockages) {
+        Set<Blockage> snapshot = Collections.newSetFromMap(new IdentityHashMap<>());
+        snapshot.addAll(activeBlockages);
 
-                if (fromUbigeo.equals(blockage.getOriginUbigeo()) &&
-                        toUbigeo.equals(blockage.getDestinationUbigeo())) {
-                    return false;
-                }
+        BitSet previous = blockedRoads;
+        BitSet toggled = (BitSet) current.clone();
+        toggled.xor(previous);
+        int changed = 0;
+        for (int road = toggled.nextSetBit(0); road >= 0; road = toggled.nextSetBit(road + 1)) {
+            changed += adjustBlockedCount(road, current.get(road) ? 1 : -1);
+        }
+        if (!toggled.isEmpty()) {
+            long epoch = blockageEpoch + 1;
+            BitSet released = (BitSet) previous.clone();
+            released.andNot(current);
+            if (!released.isEmpty()) {
+                // Publicar la época de liberación antes de vaciar: una marca tardía queda vencida al leerla
+                releaseEpoch = epoch;
+                unreachable.clear();
             }
+            blockageEpoch = epoch;
         }
-        return true;
+        blockedRoads = current;
+        syncedBlockages = Collections.unmodifiableSet(snapshot);
+        logger.info("Índice de tramos sincronizado: " + current.cardinality() + " tramos bloqueados, "
+                + changed + " versiones de ruta ajustadas");
+    }
+
+    private int adjustBlockedCount(int road, int delta) {
+        Set<VersionedRoute> versions = routesByRoad.get(road);
+        if (versions == null) {
+            return 0;
+        }
+        for (VersionedRoute version : versions) {
+            version.blockedSegments += delta;
+        }
+        return versions.size();
+    }
+
+    /**
+     * Agrega la versión al índice invertido y cuenta sus tramos ya bloqueados. Requiere policyLock.
+     */
+    private void register(VersionedRoute version) {
+        BitSet blocked = blockedRoads;
+        Edge[] table = edgeTable;
+        for (int edge : version.edges) {
+            int road = table[edge].road;
+            // Un tramo repetido en la ruta se cuenta una sola vez, igual que en adjustBlockedCount
+            if (routesByRoad.get(road).add(version) && blocked.get(road)) {
+                version.blockedSegments++;
+            }
+        }
+    }
+
+    /**
+     * Quita la versión del índice invertido; desde entonces su contador de bloqueos ya no se actualiza, así que
+     * se retira para que ninguna elección recordada la siga usando. Requiere policyLock.
+     */
+    private void unregister(VersionedRoute version) {
+        version.retired = true;
+        Edge[] table = edgeTable;
+        for (int edge : version.edges) {
+            routesByRoad.get(table[edge].road).remove(version);
+        }
+    }
+
+    /**
+     * Olvida las elecciones recordadas del par de la clave, en ambos sentidos. La generación sube antes de quitarlas:
+     * una elección en curso o la ve cambiada y no se publica, o se publica antes y se quita aquí.
+     */
+    private void forgetResolved(String key) {
+        int separator = key.indexOf('-');
+        String from = key.substring(0, separator);
+        String to = key.substring(separator + 1);
+        pairGenerations.merge(pairKey(from, to), 1L, Long::sum);
+        resolvedRoutes.remove(key);
+        resolvedRoutes.remove(to + "-" + from);
+    }
+
+    private long generation(String pairKey) {
+        return pairGenerations.getOrDefault(pairKey, 0L);
+    }
+
+    /**
+     * @return Clave del par sin sentido, común a las consultas en ambos sentidos.
+     */
+    private static String pairKey(String a, String b) {
+        return a.compareTo(b) <= 0 ? a + "-" + b : b + "-" + a;
+    }
+
+    /**
+     * @return Identificador del tramo sin sentido entre dos ubigeos, asignándolo si es nuevo. Requiere policyLock.
+     */
+    private int roadId(String a, String b) {
+        String key = a.compareTo(b) <= 0 ? a + "-" + b : b + "-" + a;
+        Integer id = roadIds.get(key);
+        if (id == null) {
+            id = roadIds.size();
+            roadIds.put(key, id);
+            routesByRoad.add(new HashSet<>());
+        }
+        return id;
     }
 
-    private void updateLRU(String key) {
-        lruQueue.remove(key);
-        lruQueue.offer(key);
+    /**
+     * @return Identificador del tramo dirigido en la tabla compartida, agregándolo si es nuevo. Requiere
+     * policyLock.
+     */
+    private int edgeId(String fromUbigeo, String toUbigeo, String name, double distance) {
+        Edge edge = new Edge(fromUbigeo, toUbigeo, name, distance, roadId(fromUbigeo, toUbigeo));
+        Integer id = edgeIds.get(edge);
+        if (id != null) {
+            return id;
+        }
+        Edge[] table = edgeTable;
+        if (edgeCount == table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+        }
+        table[edgeCount] = edge;
+        // Publicar el arreglo después de escribir el tramo; una vista creada antes conserva el suyo
+        edgeTable = table;
+        edgeIds.put(edge, edgeCount);
+        return edgeCount++;
     }
 
-    private List<RouteSegment> reverseRoute(List<RouteSegment> route) {
-        List<RouteSegment> reversedRoute = new ArrayList<>();
+    /**
+     * Convierte la ruta a su forma compacta. Requiere policyLock.
+     */
+    private VersionedRoute compact(List<RouteSegment> route, int blockageSet) {
+        int[] edges = new int[route.size()];
+        int[] durations = new int[route.size()];
+        for (int i = 0; i < edges.length; i++) {
+            RouteSegment segment = route.get(i);
+            edges[i] = edgeId(segment.getFromUbigeo(), segment.getToUbigeo(), segment.getName(),
+                    segment.getDistance());
+            durations[i] = (int) Math.min(Integer.MAX_VALUE, segment.getDurationMinutes());
+        }
+        return new VersionedRoute(edges, durations, blockageSet);
+    }
 
-        for (int i = route.size() - 1; i >= 0; i--) {
-            RouteSegment originalSegment = route.get(i);
-            String[] locations = originalSegment.getName().split(" to ");
-            String fromName = locations[1];
-            String toName = locations[0];
+    /**
+     * @return Identificador del conjunto de bloqueos, agregándolo si es nuevo. Requiere policyLock.
+     */
+    private int blockageSetId(Collection<Blockage> blockages) {
+        List<String> descriptors = new ArrayList<>(blockages.size());
+        for (Blockage blockage : blockages) {
+            descriptors.add(blockage.getOriginUbigeo() + "-" + blockage.getDestinationUbigeo() + "@"
+                    + blockage.getStartTime() + "/" + blockage.getEndTime());
+        }
+        Collections.sort(descriptors);
+        return internBlockageSet(descriptors);
+    }
 
-            RouteSegment reversedSegment = new RouteSegment(
-                    fromName + " to " + toName,
-                    originalSegment.getToUbigeo(),
-                    originalSegment.getFromUbigeo(),
-                    originalSegment.getDistance(),
-                    originalSegment.getDurationMinutes()
-            );
+    private int internBlockageSet(List<String> descriptors) {
+        Integer id = blockageSetIds.get(descriptors);
+        if (id == null) {
+            List<String> set = Collections.unmodifiableList(descriptors);
+            id = blockageSets.size();
+            blockageSets.add(set);
+            blockageSetIds.put(set, id);
+        }
+        return id;
+    }
 
-            reversedRoute.add(reversedSegment);
+    /**
+     * Anota el acceso sin bloquear; si el buffer está lleno el acceso se descarta, lo que solo resta precisión
+     * a la recencia y a la frecuencia estimada.
+     */
+    private void recordAccess(String key) {
+        readBuffer.offer(key);
+        if (policyLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                policyLock.unlock();
+            }
         }
+    }
 
-        return reversedRoute;
+    private void drainReadBuffer() {
+        String key;
+        while ((key = readBuffer.poll()) != null) {
+            sketch.increment(key);
+            CacheEntry entry = cache.get(key);
+            if (entry != null) {
+                onAccess(entry);
+            }
+        }
+    }
+
+    /**
+     * Actualiza la recencia de una entrada: en la ventana y en el segmento protegido pasa al final; desde el
+     * segmento de prueba se promueve al protegido, que degrada su entrada más antigua si se excede.
+     */
+    private void onAccess(CacheEntry entry) {
+        switch (entry.segment) {
+            case WINDOW:
+                window.moveToEnd(entry);
+                break;
+            case PROBATION:
+                probation.remove(entry);
+                protectedSegment.addLast(entry);
+                while (protectedSegment.size() > protectedCapacity) {
+                    probation.addLast(protectedSegment.removeFirst());
+                }
+                break;
+            case PROTECTED:
+                protectedSegment.moveToEnd(entry);
+                break;
+            default:
+                break; // Ya desalojada
+        }
+    }
+
+    /**
+     * Mueve a la zona principal las entradas que desbordan la ventana. Si la zona principal está llena, la
+     * candidata solo entra si es más frecuente que la víctima (la entrada más antigua del segmento de prueba).
+     */
+    private void evictIfNeeded() {
+        int mainCapacity = capacity - windowCapacity;
+        while (window.size() > windowCapacity) {
+            CacheEntry candidate = window.removeFirst();
+            if (probation.size() + protectedSegment.size() < mainCapacity) {
+                probation.addLast(candidate);
+                continue;
+            }
+            CacheEntry victim = probation.size() > 0 ? probation.first() : protectedSegment.first();
+            if (victim != null && sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                (victim.segment == Segment.PROBATION ? probation : protectedSegment).remove(victim);
+                cache.remove(victim.key, victim);
+                victim.versions.forEach(this::unregister);
+                forgetResolved(victim.key);
+                evictionMeter.mark();
+                probation.addLast(candidate);
+            } else {
+                candidate.segment = Segment.EVICTED;
+                cache.remove(candidate.key, candidate);
+                candidate.versions.forEach(this::unregister);
+                forgetResolved(candidate.key);
+                evictionMeter.mark();
+            }
+        }
     }
 
     public void putRoute(String from, String to, List<RouteSegment> route, List<Blockage> activeBlockages) {
         String key = from + "-" + to;
-        if (!cache.containsKey(key)) {
-            if (cache.size() >= capacity) {
-                String lruKey = lruQueue.poll();
-                cache.remove(lruKey);
+
+        policyLock.lock();
+        try {
+            drainReadBuffer();
+            // La versión nueva puede ser más corta que la elegida antes para el par, en cualquier sentido
+            forgetResolved(key);
+            VersionedRoute versionedRoute = compact(route, blockageSetId(activeBlockages));
+            register(versionedRoute);
+            CacheEntry entry = cache.get(key);
+            if (entry == null) {
+                entry = new CacheEntry(key, Collections.singletonList(versionedRoute));
+                cache.put(key, entry);
+                window.addLast(entry);
+                evictIfNeeded();
+                return;
+            }
+            // Se publica una lista nueva para que los lectores concurrentes nunca vean una a medio modificar
+            List<VersionedRoute> routes = new ArrayList<>(entry.versions);
+            routes.add(versionedRoute);
+            // Mantener solo las versiones más recientes
+            if (routes.size() > MAX_VERSIONS_PER_ROUTE) {
+                unregister(routes.remove(0));
+            }
+            entry.versions = Collections.unmodifiableList(routes);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Guarda las rutas alternativas de un par origen-destino (por ejemplo, las k más cortas sin bloqueos),
+     * ordenadas de menor a mayor duración. Reemplaza las que hubiera para ese par.
+     */
+    public void putAlternatives(String from, String to, List<List<RouteSegment>> routes) {
+        policyLock.lock();
+        try {
+            List<VersionedRoute> versions = new ArrayList<>(routes.size());
+            for (List<RouteSegment> route : routes) {
+                versions.add(compact(route, 0));
+            }
+            versions.sort(Comparator.comparingLong(VersionedRoute::getTotalDuration));
+            versions.forEach(this::register);
+            forgetResolved(from + "-" + to);
+            List<VersionedRoute> previous = alternatives.put(from + "-" + to, versions);
+            if (previous != null) {
+                previous.forEach(this::unregister);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Guarda las versiones en caché, de la entrada más usada a la menos usada, en un archivo temporal que luego
+     * se mueve sobre el definitivo. Las alternativas precalculadas no se guardan: se recalculan al arrancar.
+     *
+     * @param file        Archivo de destino.
+     * @param fingerprint Huella del grafo con que se calcularon las rutas.
+     * @return Número de versiones guardadas.
+     */
+    public int save(Path file, long fingerprint) throws IOException {
+        // Con el lock se toma una vista consistente: ninguna versión copiada usa tramos o conjuntos posteriores
+        Edge[] table;
+        int edges;
+        List<List<String>> sets;
+        List<CacheEntry> entries = new ArrayList<>(cache.size());
+        List<List<VersionedRoute>> entryVersions = new ArrayList<>(cache.size());
+        policyLock.lock();
+        try {
+            drainReadBuffer();
+            table = edgeTable;
+            edges = edgeCount;
+            sets = new ArrayList<>(blockageSets);
+            protectedSegment.addMostRecentFirst(entries);
+            probation.addMostRecentFirst(entries);
+            window.addMostRecentFirst(entries);
+            for (CacheEntry entry : entries) {
+                entryVersions.add(entry.versions);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int versionCount = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(edges);
+            for (int i = 0; i < edges; i++) {
+                Edge edge = table[i];
+                out.writeUTF(edge.fromUbigeo);
+                out.writeUTF(edge.toUbigeo);
+                out.writeUTF(edge.name);
+                out.writeDouble(edge.distance);
+            }
+            out.writeInt(sets.size());
+            for (List<String> set : sets) {
+                out.writeInt(set.size());
+                for (String descriptor : set) {
+                    out.writeUTF(descriptor);
+                }
+            }
+            out.writeInt(entries.size());
+            for (int e = 0; e < entries.size(); e++) {
+                List<VersionedRoute> versions = entryVersions.get(e);
+                out.writeUTF(entries.get(e).key);
+                out.writeInt(versions.size());
+                for (VersionedRoute version : versions) {
+                    out.writeInt(version.blockageSet);
+                    out.writeInt(version.edges.length);
+                    for (int i = 0; i < version.edges.length; i++) {
+                        out.writeInt(version.edges[i]);
+                        out.writeInt(version.durations[i]);
+                    }
+                    versionCount++;
+                }
+            }
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        logger.info(String.format("RouteCache guardado en %s: %d pares, %d versiones, %d tramos",
+                file, entries.size(), versionCount, edges));
+        return versionCount;
+    }
+
+    /**
+     * Agrega las versiones del archivo, en el orden en que se guardaron, a los pares que aún no están en caché;
+     * los que ya tienen versiones (calculadas mientras se cargaba) se conservan. Puede ejecutarse en paralelo con
+     * las consultas: cada par se inserta por separado con el lock de la política.
+     *
+     * @param file        Archivo escrito por {@link #save}.
+     * @param fingerprint Huella del grafo actual.
+     * @return Número de versiones cargadas, o 0 si el archivo corresponde a otro grafo o a otro formato.
+     */
+    public int load(Path file, long fingerprint) throws IOException {
+        long startNanos = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != fingerprint) {
+                logger.info("El archivo de RouteCache " + file + " no corresponde al grafo actual. Se ignora.");
+                return 0;
+            }
+            int edgeCount = in.readInt();
+            String[][] edgeNames = new String[edgeCount][];
+            double[] edgeDistances = new double[edgeCount];
+            for (int i = 0; i < edgeCount; i++) {
+                edgeNames[i] = new String[]{in.readUTF(), in.readUTF(), in.readUTF()};
+                edgeDistances[i] = in.readDouble();
+            }
+            int setCount = in.readInt();
+            List<List<String>> sets = new ArrayList<>(setCount);
+            for (int i = 0; i < setCount; i++) {
+                int size = in.readInt();
+                List<String> set = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    set.add(in.readUTF());
+                }
+                sets.add(set);
+            }
+
+            // Traducir los identificadores del archivo a los de esta instancia
+            int[] edgeIds = new int[edgeCount];
+            int[] setIds = new int[setCount];
+            policyLock.lock();
+            try {
+                for (int i = 0; i < edgeCount; i++) {
+                    edgeIds[i] = edgeId(edgeNames[i][0], edgeNames[i][1], edgeNames[i][2], edgeDistances[i]);
+                }
+                for (int i = 0; i < setCount; i++) {
+                    setIds[i] = internBlockageSet(sets.get(i));
+                }
+            } finally {
+                policyLock.unlock();
+            }
+
+            int entryCount = in.readInt();
+            int loadedVersions = 0;
+            for (int e = 0; e < entryCount; e++) {
+                String key = in.readUTF();
+                int versionCount = in.readInt();
+                List<VersionedRoute> versions = new ArrayList<>(versionCount);
+                for (int v = 0; v < versionCount; v++) {
+                    int blockageSet = setIds[in.readInt()];
+                    int length = in.readInt();
+                    int[] edges = new int[length];
+                    int[] durations = new int[length];
+                    for (int i = 0; i < length; i++) {
+                        edges[i] = edgeIds[in.readInt()];
+                        durations[i] = in.readInt();
+                    }
+                    versions.add(new VersionedRoute(edges, durations, blockageSet));
+                }
+                if (insertLoaded(key, versions)) {
+                    loadedVersions += versions.size();
+                }
             }
-            cache.put(key, new ArrayList<>());
-            lruQueue.offer(key);
+            logger.info(String.format("RouteCache cargado desde %s: %d versiones de %d pares en %d ms",
+                    file, loadedVersions, entryCount, (System.nanoTime() - startNanos) / 1_000_000));
+            return loadedVersions;
         }
+    }
+
+    private boolean insertLoaded(String key, List<VersionedRoute> versions) {
+        if (versions.isEmpty()) {
+            return false;
+        }
+        policyLock.lock();
+        try {
+            if (cache.containsKey(key)) {
+                return false;
+            }
+            versions.forEach(this::register);
+            forgetResolved(key);
+            CacheEntry entry = new CacheEntry(key, Collections.unmodifiableList(versions));
+            cache.put(key, entry);
+            window.addLast(entry);
+            evictIfNeeded();
+            return true;
+        } finally {
+            policyLock.unlock();
+        }
+    }
 
-        long totalDuration = route.stream().mapToLong(RouteSegment::getDurationMinutes).sum();
-        VersionedRoute versionedRoute = new VersionedRoute(route, new HashSet<>(activeBlockages), totalDuration);
-        List<VersionedRoute> routes = cache.get(key);
-        routes.add(versionedRoute);
+    /**
+     * @return Número de pares origen-destino con rutas alternativas precalculadas.
+     */
+    public int getAlternativePairCount() {
+        return alternatives.size();
+    }
 
-        // Opcional: limitar el número de versiones por ruta
-        if (routes.size() > 5) {  // Por ejemplo, mantener solo las 5 versiones más recientes
-            routes.remove(0);
+    /**
+     * Estimación de la memoria que ocupan las rutas alternativas: cabeceras de objeto y los arreglos de tramos y
+     * duraciones de cada versión. Los tramos de la tabla compartida se cuentan en
+     * {@link #getMemoryBytes()}.
+     *
+     * @return Bytes aproximados.
+     */
+    public long getAlternativesMemoryBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, List<VersionedRoute>> entry : alternatives.entrySet()) {
+            bytes += 64 + 2L * entry.getKey().length() + 16 + 8L * entry.getValue().size();
+            for (VersionedRoute version : entry.getValue()) {
+                bytes += version.getMemoryBytes();
+            }
         }
+        return bytes;
+    }
+
+    /**
+     * Estimación de la memoria de toda la caché: versiones, alternativas y la tabla compartida de tramos (cada
+     * tramo: objeto de 48 bytes más su nombre y el invertido; los ubigeos se comparten con las ubicaciones).
+     *
+     * @return Bytes aproximados.
+     */
+    public long getMemoryBytes() {
+        long bytes = getAlternativesMemoryBytes();
+        for (CacheEntry entry : cache.values()) {
+            bytes += 64 + 2L * entry.key.length() + 16 + 8L * entry.versions.size();
+            for (VersionedRoute version : entry.versions) {
+                bytes += version.getMemoryBytes();
+            }
+        }
+        Edge[] table = edgeTable;
+        bytes += 16 + 4L * table.length;
+        for (int i = 0; i < table.length && table[i] != null; i++) {
+            bytes += 48 + 2 * (40 + 2L * table[i].name.length());
+        }
+        return bytes;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Fracción de consultas getRoute que encontraron una ruta compatible (0 si no hubo consultas).
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return Época de bloqueos actual. Quien calcula rutas la lee antes de resolver y la pasa a
+     * {@link #markUnreachable}, para que un resultado obtenido con bloqueos ya liberados no se registre.
+     */
+    public long getBlockageEpoch() {
+        return blockageEpoch;
+    }
+
+    /**
+     * Registra que no se encontró ruta de from a to con los bloqueos de la época indicada. Se ignora si desde
+     * entonces se desbloqueó algún tramo.
+     *
+     * @param epoch Época leída con {@link #getBlockageEpoch} antes de resolver.
+     */
+    public void markUnreachable(String from, String to, long epoch) {
+        if (epoch >= releaseEpoch) {
+            unreachable.put(from + "-" + to, epoch);
+            logger.info(String.format("Par %s -> %s registrado sin ruta en la época de bloqueos %d", from, to, epoch));
+        }
+    }
+
+    /**
+     * @return true si se registró que from→to no tiene ruta y desde entonces no se desbloqueó ningún tramo.
+     */
+    public boolean isUnreachable(String from, String to) {
+        Long epoch = unreachable.get(from + "-" + to);
+        if (epoch == null || epoch < releaseEpoch) {
+            return false;
+        }
+        unreachableHitMeter.mark();
+        return true;
+    }
+
+    public int getUnreachableCount() {
+        return unreachable.size();
+    }
+
+    /**
+     * @return true si hay versiones en caché del par, en cualquier sentido, sean o no válidas. No cuenta como
+     * consulta para la tasa de aciertos ni para la política de desalojo.
+     */
+    public boolean containsRoute(String from, String to) {
+        return cache.containsKey(from + "-" + to) || cache.containsKey(to + "-" + from);
+    }
+
+    /**
+     * @return Promedio de versiones guardadas por par origen-destino (0 si la caché está vacía).
+     */
+    public double getAverageVersionsPerKey() {
+        long versions = 0;
+        int keys = 0;
+        for (CacheEntry entry : cache.values()) {
+            versions += entry.versions.size();
+            keys++;
+        }
+        return keys == 0 ? 0.0 : (double) versions / keys;
+    }
+
+    /**
+     * Registra aciertos (totales e inversos), fallos (totales y por bloqueos), desalojos, tamaño, versiones por
+     * par, memoria estimada y pares sin ruta (registrados y consultas evitadas) como métricas. Los nombres no
+     * dependen de la instancia: la última caché registrada reemplaza a la anterior.
+     */
+    public void registerMetrics(MetricRegistry registry) {
+        Map<String, Metric> metrics = new LinkedHashMap<>();
+        metrics.put(MetricRegistry.name(RouteCache.class, "hits"), hitMeter);
+        metrics.put(MetricRegistry.name(RouteCache.class, "misses"), missMeter);
+        metrics.put(MetricRegistry.name(RouteCache.class, "reverseHits"), reverseHitMeter);
+        metrics.put(MetricRegistry.name(RouteCache.class, "blockedMisses"), blockedMissMeter);
+        metrics.put(MetricRegistry.name(RouteCache.class, "evictions"), evictionMeter);
+        metrics.put(MetricRegistry.name(RouteCache.class, "unreachableHits"), unreachableHitMeter);
+        metrics.put(MetricRegistry.name(RouteCache.class, "unreachablePairs"),
+                (Gauge<Integer>) this::getUnreachableCount);
+        metrics.put(MetricRegistry.name(RouteCache.class, "size"), (Gauge<Integer>) this::size);
+        metrics.put(MetricRegistry.name(RouteCache.class, "hitRatio"), (Gauge<Double>) this::getHitRatio);
+        metrics.put(MetricRegistry.name(RouteCache.class, "versionsPerKey"),
+                (Gauge<Double>) this::getAverageVersionsPerKey);
+        metrics.put(MetricRegistry.name(RouteCache.class, "memoryBytes"), (Gauge<Long>) this::getMemoryBytes);
+        metrics.forEach((name, metric) -> {
+            registry.remove(name);
+            registry.register(name, metric);
+        });
     }
 
     public void clear() {
         logger.info("Limpiando RouteCache...");
 
-        // Registrar estado antes de limpiar
-        logger.info("Estado antes de limpiar:");
-        logger.info("  Número de rutas en caché: " + cache.size());
-        logger.info("  Número de entradas en LRU queue: " + lruQueue.size());
+        policyLock.lock();
+        try {
+            // Registrar estado antes de limpiar
+            logger.info("Estado antes de limpiar:");
+            logger.info("  Número de rutas en caché: " + cache.size());
+            logger.info(String.format("  Ventana: %d, prueba: %d, protegido: %d",
+                    window.size(), probation.size(), protectedSegment.size()));
+            logger.info(String.format("  Tasa de aciertos: %.1f %% (%d aciertos, %d fallos)",
+                    100 * getHitRatio(), hits.sum(), misses.sum()));
 
-        // Limpiar el mapa de caché
-        cache.clear();
+            // Limpiar el mapa de caché y la política de desalojo
+            cache.clear();
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+            readBuffer.clear();
+            sketch.clear();
+            // Los tramos bloqueados y la tabla de tramos siguen vigentes; solo se vacía el índice de versiones
+            routesByRoad.forEach(versions -> versions.forEach(version -> version.retired = true));
+            routesByRoad.forEach(Set::clear);
+            pairGenerations.replaceAll((pair, generation) -> generation + 1);
+            resolvedRoutes.clear();
+            hits.reset();
+            misses.reset();
 
-        // Limpiar la cola LRU
-        lruQueue.clear();
+            alternatives.clear();
+            unreachable.clear();
+        } finally {
+            policyLock.unlock();
+        }
 
         logger.info("RouteCache limpiado completamente");
     }
 
+    private enum Segment {
+        WINDOW, PROBATION, PROTECTED, EVICTED
+    }
+
+    /**
+     * Entrada de la caché: versiones del par (lista inmutable reemplazada en cada putRoute) y enlaces de la lista
+     * de acceso del segmento en que está, modificados solo con el lock de la política.
+     */
+    private static final class CacheEntry {
+        final String key;
+        volatile List<VersionedRoute> versions;
+        Segment segment;
+        CacheEntry prev;
+        CacheEntry next;
+
+        CacheEntry(String key, List<VersionedRoute> versions) {
+            this.key = key;
+            this.versions = versions;
+        }
+    }
+
+    /**
+     * Lista doblemente enlazada en orden de acceso (primero el más antiguo), con inserción y borrado O(1).
+     */
+    private static final class AccessOrder {
+        private final Segment segment;
+        private final CacheEntry head = new CacheEntry(null, null); // Centinela
+        private int size;
+
+        AccessOrder(Segment segment) {
+            this.segment = segment;
+            head.prev = head;
+            head.next = head;
+        }
+
+        int size() {
+            return size;
+        }
+
+        CacheEntry first() {
+            return size == 0 ? null : head.next;
+        }
+
+        void addLast(CacheEntry entry) {
+            entry.segment = segment;
+            entry.prev = head.prev;
+            entry.next = head;
+            head.prev.next = entry;
+            head.prev = entry;
+            size++;
+        }
+
+        void remove(CacheEntry entry) {
+            entry.prev.next = entry.next;
+            entry.next.prev = entry.prev;
+            entry.prev = null;
+            entry.next = null;
+            entry.segment = Segment.EVICTED;
+            size--;
+        }
+
+        /**
+         * Agrega las entradas a la lista, de la de acceso más reciente a la más antigua.
+         */
+        void addMostRecentFirst(List<CacheEntry> entries) {
+            for (CacheEntry entry = head.prev; entry != head; entry = entry.prev) {
+                entries.add(entry);
+            }
+        }
+
+        CacheEntry removeFirst() {
+            CacheEntry entry = head.next;
+            remove(entry);
+            return entry;
+        }
+
+        void moveToEnd(CacheEntry entry) {
+            remove(entry);
+            addLast(entry);
+        }
+
+        void clear() {
+            head.prev = head;
+            head.next = head;
+            size = 0;
+        }
+    }
+
+    /**
+     * Estimador de frecuencia Count-Min con contadores de 4 bits (saturan en 15). Tras 10 × capacidad
+     * incrementos todos los contadores se dividen a la mitad, para que la frecuencia refleje el uso reciente.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x97CB3127, 0xB492B66F, 0x9AE16A3B, 0xCBF29CE5};
+
+        private final byte[] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+            this.counters = new byte[DEPTH * width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * Math.max(16, capacity);
+        }
+
+        private int index(int row, int hash) {
+            int h = hash * SEEDS[row];
+            h ^= h >>> 16;
+            return row * (mask + 1) + (h & mask);
+        }
+
+        void increment(String key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int i = index(row, hash);
+                if (counters[i] < MAX_COUNT) {
+                    counters[i]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(String key) {
+            int hash = key.hashCode();
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, counters[index(row, hash)]);
+            }
+            return frequency;
+        }
+
+        void clear() {
+            Arrays.fill(counters, (byte) 0);
+            additions = 0;
+        }
+    }
+
+    /**
+     * Tramo dirigido de la tabla compartida: lo que no depende del ruteador que lo usó.
+     */
+    private static final class Edge {
+        final String fromUbigeo;
+        final String toUbigeo;
+        final String name;
+        final String reversedName;
+        final double distance;
+        final int road;
+
+        Edge(String fromUbigeo, String toUbigeo, String name, double distance, int road) {
+            this.fromUbigeo = fromUbigeo;
+            this.toUbigeo = toUbigeo;
+            this.name = name;
+            // Los nombres tienen la forma "origen to destino"
+            String[] locations = name.split(" to ");
+            this.reversedName = locations.length == 2 ? locations[1] + " to " + locations[0] : name;
+            this.distance = distance;
+            this.road = road;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Edge)) return false;
+            Edge other = (Edge) o;
+            return Double.compare(distance, other.distance) == 0 && fromUbigeo.equals(other.fromUbigeo)
+                    && toUbigeo.equals(other.toUbigeo) && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fromUbigeo, toUbigeo, name, distance);
+        }
+    }
+
+    /**
+     * Vista de solo lectura de una versión, hacia adelante o invertida. Cada get crea el RouteSegment de esa
+     * posición; la vista guarda la tabla de tramos vigente al crearla, que contiene todos los de la versión.
+     */
+    private static final class RouteView extends AbstractList<RouteSegment> implements RandomAccess {
+        private final VersionedRoute version;
+        private final Edge[] table;
+        private final boolean reversed;
+
+        RouteView(VersionedRoute version, Edge[] table, boolean reversed) {
+            this.version = version;
+            this.table = table;
+            this.reversed = reversed;
+        }
+
+        @Override
+        public RouteSegment get(int index) {
+            int size = version.edges.length;
+            Objects.checkIndex(index, size);
+            if (!reversed) {
+                Edge edge = table[version.edges[index]];
+                return new RouteSegment(edge.name, edge.fromUbigeo, edge.toUbigeo, edge.distance,
+                        version.durations[index]);
+            }
+            int position = size - 1 - index;
+            Edge edge = table[version.edges[position]];
+            return new RouteSegment(edge.reversedName, edge.toUbigeo, edge.fromUbigeo, edge.distance,
+                    version.durations[position]);
+        }
+
+        @Override
+        public int size() {
+            return version.edges.length;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < version.edges.length; i++) {
+                if (sb.length() > 0) sb.append(" -> ");
+                Edge edge = table[version.edges[reversed ? version.edges.length - 1 - i : i]];
+                sb.append(reversed ? edge.reversedName : edge.name);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Elección de getRoute para un par: la versión, si se usa invertida, la clave cuyo acceso se anota, la época
+     * de bloqueos y la generación del par con que se eligió.
+     */
+    private static final class ResolvedRoute {
+        final VersionedRoute version;
+        final boolean reversed;
+        final String accessKey;
+        final long epoch;
+        final long generation;
+
+        ResolvedRoute(VersionedRoute version, boolean reversed, String accessKey, long epoch, long generation) {
+            this.version = version;
+            this.reversed = reversed;
+            this.accessKey = accessKey;
+            this.epoch = epoch;
+            this.generation = generation;
+        }
+
+        /**
+         * @return true si la elección sigue siendo la mejor: no hubo desbloqueos desde su época, las versiones del
+         * par no cambiaron desde su generación y la versión sigue en la caché y sin tramos bloqueados.
+         */
+        boolean isCurrent(long releaseEpoch, long pairGeneration) {
+            return epoch >= releaseEpoch && generation == pairGeneration && !version.retired && version.isValid();
+        }
+    }
+
     private static class VersionedRoute {
-        private List<RouteSegment> route;
-        private Set<Blockage> activeBlockages;
-        private long totalDuration;
+        // Tramos de la tabla compartida y duración de cada uno, en orden de recorrido
+        private final int[] edges;
+        private final int[] durations;
+        private final int blockageSet;
+        private final long totalDuration;
+        // Tramos sin sentido de la ruta que están bloqueados (se modifica solo con policyLock)
+        private volatile int blockedSegments;
+        // Fuera del índice invertido (desalojada o reemplazada): blockedSegments ya no es confiable
+        private volatile boolean retired;
 
-        public VersionedRoute(List<RouteSegment> route, Set<Blockage> activeBlockages, long totalDuration) {
-            this.route = route;
-            this.activeBlockages = activeBlockages;
-            this.totalDuration = totalDuration;
+        VersionedRoute(int[] edges, int[] durations, int blockageSet) {
+            this.edges = edges;
+            this.durations = durations;
+            this.blockageSet = blockageSet;
+            long total = 0;
+            for (int duration : durations) {
+                total += duration;
+            }
+            this.totalDuration = total;
         }
 
-        public List<RouteSegment> getRoute() {
-            return route;
+        public boolean isValid() {
+            return blockedSegments == 0;
         }
 
-        public Set<Blockage> getActiveBlockages() {
-            return activeBlockages;
+        /**
+         * @return Identificador del conjunto de bloqueos activos cuando se calculó la ruta.
+         */
+        public int getBlockageSet() {
+            return blockageSet;
         }
 
         public long getTotalDuration() {
             return totalDuration;
         }
+
+        long getMemoryBytes() {
+            return 40 + 2 * 16 + 8L * edges.length;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,7 @@
 package com.odiparpack.models;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.ortools.constraintsolver.Assignment;
@@ -8,6 +10,13 @@ import com.google.ortools.constraintsolver.RoutingModel;
 import com.google.ortools.constraintsolver.RoutingSearchParameters;
 import com.odiparpack.DataLoader;
 import com.odiparpack.DataModel;
+import com.odiparpack.simulation.blockage.BlockagePublisher;
+import com.odiparpack.simulation.blockage.BlockageSnapshot;
+import com.odiparpack.simulation.route.RoadGraph;
+import com.odiparpack.simulation.route.RoutingIndexes;
+import com.odiparpack.simulation.route.ShortestPathEngine;
+import com.odiparpack.simulation.route.TimeDependentRouter;
+import com.odiparpack.simulation.route.WarehouseDistanceTable;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -16,6 +25,7 @@ import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
@@ -34,8 +44,10 @@ public class SimulationState {
     private List<Vehicle> vehiclesNeedingNewRoutes;
     private List<String> almacenesPrincipales = Arrays.asList("150101", "040201", "130101"); // Lima, Arequipa, Trujillo
     private RouteCache routeCache;
-    private List<Blockage> activeBlockages;
-    private long[][] currentTimeMatrix;
+    // Precarga de routeCache desde disco; nunca termina con error
+    private CompletableFuture<Integer> routeCacheLoad = CompletableFuture.completedFuture(0);
+    // Publica la vista inmutable de los bloqueos activos y la matriz que los aplica; se reemplaza en cada recarga
+    private volatile BlockagePublisher blockagePublisher;
     private List<Maintenance> maintenanceSchedule;
     private static final String BREAKDOWN_COMMAND_FILE = "src/main/resources/breakdown_commands.txt";
     private long lastModified = 0;
@@ -45,6 +57,7 @@ public class SimulationState {
     private List<String> locationNames;
     private List<String> locationUbigeos;
     private long[][] timeMatrix;
+    private RoutingIndexes routingIndexes;
     private List<Blockage> allBlockages;
     private volatile boolean isPaused = false;
     private volatile boolean isStopped = false;
@@ -58,8 +71,11 @@ public class SimulationState {
             // Detener la simulación primero
             this.stopSimulation();
 
-            // Limpiar todas las estructuras existentes por seguridad
+            // Guardar las rutas calculadas para que la nueva caché arranque con ellas; luego limpiar por seguridad.
+            // Se espera la precarga pendiente para no guardar ni limpiar una caché a medio cargar
             if (this.routeCache != null) {
+                this.routeCacheLoad.join();
+                saveRouteCache();
                 this.routeCache.clear();
             }
 
@@ -88,8 +104,10 @@ public class SimulationState {
             DataLoader dataLoader = new DataLoader();
 
             // Cargar datos desde archivos
-            this.locations = dataLoader.loadLocations("src/main/resources/locations.txt");
-            List<Edge> edges = dataLoader.loadEdges("src/main/resources/edges.txt", this.locations);
+            String locationsFile = "src/main/resources/locations.txt";
+            String edgesFile = "src/main/resources/edges.txt";
+            this.locations = dataLoader.loadLocations(locationsFile);
+            List<Edge> edges = dataLoader.loadEdges(edgesFile, this.locations);
             List<Vehicle> vehiclesList = dataLoader.loadVehicles("src/main/resources/vehicles.txt");
             this.orders = dataLoader.loadOrders("src/main/resources/orders.txt", this.locations);
             this.allBlockages = dataLoader.loadBlockages("src/main/resources/blockages.txt");
@@ -97,6 +115,7 @@ public class SimulationState {
 
             // Reinicializar el cache de rutas
             this.routeCache = new RouteCache(ROUTE_CACHE_CAPACITY);
+            this.routeCache.registerMetrics(metricRegistry);
 
             // Construir índices y matrices
             List<Location> locationList = new ArrayList<>(this.locations.values());
@@ -108,10 +127,15 @@ public class SimulationState {
             }
 
             // Crear matriz de tiempos
-            this.timeMatrix = dataLoader.createTimeMatrix(locationList, edges);
-            this.currentTimeMatrix = Arrays.stream(this.timeMatrix)
-                    .map(row -> row.clone())
-                    .toArray(long[][]::new);
+            RoadGraph roadGraph = dataLoader.createRoadGraph(locationList, edges);
+            this.routeCacheLoad = dataLoader.loadRouteCacheAsync(this.routeCache, roadGraph);
+            this.timeMatrix = dataLoader.createTimeMatrix(roadGraph);
+            RoutingIndexes.Builder indexes = RoutingIndexes.builder()
+                    .roadGraph(roadGraph)
+                    .allPairsTable(dataLoader.createAllPairsTable(this.timeMatrix, locationsFile, edgesFile))
+                    .contractionHierarchy(dataLoader.createContractionHierarchy(roadGraph))
+                    .landmarkTable(dataLoader.createLandmarkTable(roadGraph))
+                    .overlayGraph(dataLoader.createOverlayGraph(roadGraph, locationList));
 
             // Reinicializar listas de nombres y ubigeos
             this.locationNames = new ArrayList<>();
@@ -134,7 +158,6 @@ public class SimulationState {
 
             // Reinicializar otras estructuras de datos
             this.vehiclesNeedingNewRoutes = new ArrayList<>();
-            this.activeBlockages = new ArrayList<>();
             this.breakdownLogs.clear();
 
             // Reinicializar el warehouse manager
@@ -142,6 +165,14 @@ public class SimulationState {
 
             // Reinicializar los almacenes principales
             this.almacenesPrincipales = Arrays.asList("150101", "040201", "130101");
+            this.routingIndexes = indexes
+                    .warehouseDistanceTable(WarehouseDistanceTable.build(roadGraph, almacenesPrincipales))
+                    .timeDependentRouter(TimeDependentRouter.build(roadGraph, this.allBlockages, locationNames))
+                    .build();
+            this.blockagePublisher = new BlockagePublisher(this.timeMatrix, this.routingIndexes, this.routeCache);
+            dataLoader.precomputeAlternativeRoutes(this.routeCache, roadGraph, this.locationNames,
+                    DataLoader.warehouseToCapitalPairs(almacenesPrincipales, this.locationUbigeos), ALTERNATIVE_ROUTES_K);
+            startRouteWarmup(dataLoader);
 
             // Restablecer flags de control
             this.isPaused = false;
@@ -165,20 +196,35 @@ public class SimulationState {
         }
     }
 
+    /**
+     * @return Bloqueos activos de la última época (lista no modificable).
+     */
     public List<Blockage> getActiveBlockages() {
-        return activeBlockages;
+        return blockagePublisher.getSnapshot().getBlockages();
     }
 
-    public void setActiveBlockages(List<Blockage> activeBlockages) {
-        this.activeBlockages = activeBlockages;
+    /**
+     * @return Vista inmutable de los bloqueos activos, con su época.
+     */
+    public BlockageSnapshot getBlockageSnapshot() {
+        return blockagePublisher.getSnapshot();
     }
 
-    public long[][] getCurrentTimeMatrix() {
-        return currentTimeMatrix;
+    /**
+     * Guarda la caché de rutas en disco, asociada a la huella del grafo actual.
+     */
+    public void saveRouteCache() {
+        if (routeCache != null && routingIndexes != null) {
+            new DataLoader().saveRouteCache(routeCache, routingIndexes.getRoadGraph());
+        }
+    }
+
+    public TimeDependentRouter getTimeDependentRouter() {
+        return routingIndexes.getTimeDependentRouter();
     }
 
-    public void setCurrentTimeMatrix(long[][] currentTimeMatrix) {
-        this.currentTimeMatrix = currentTimeMatrix;
+    public long[][] getCurrentTimeMatrix() {
+        return blockagePublisher.getCurrentTimeMatrix();
     }
 
     public Map<String, Location> getLocations() {
@@ -228,7 +274,7 @@ public class SimulationState {
 
     public SimulationState(Map<String, Vehicle> vehicleMap, LocalDateTime initialSimulationTime,
                            List<Order> orders, Map<String, Location> locations, RouteCache routeCache,
-                           long[][] originalTimeMatrix, List<Blockage> blockages,
+                           long[][] originalTimeMatrix, RoutingIndexes baseIndexes, List<Blockage> blockages,
                            List<Maintenance> maintenanceSchedule,
                            Map<String, Integer> locationIndices, List<String> locationNames, List<String> locationUbigeos) {
         this.vehicles = vehicleMap;
@@ -243,13 +289,38 @@ public class SimulationState {
         this.locationUbigeos = locationUbigeos;
         this.maintenanceSchedule = maintenanceSchedule;
         this.allBlockages = blockages;
-        this.activeBlockages = new ArrayList<>();
-        this.currentTimeMatrix = Arrays.stream(originalTimeMatrix)
-                .map(long[]::clone)
-                .toArray(long[][]::new);
+        RoadGraph roadGraph = baseIndexes.getRoadGraph();
+        DataLoader dataLoader = new DataLoader();
+        // Precargar en segundo plano las rutas guardadas en la ejecución anterior
+        this.routeCacheLoad = dataLoader.loadRouteCacheAsync(routeCache, roadGraph);
+        this.routingIndexes = baseIndexes.toBuilder()
+                .landmarkTable(dataLoader.createLandmarkTable(roadGraph))
+                .overlayGraph(dataLoader.createOverlayGraph(roadGraph, locations.values()))
+                .warehouseDistanceTable(WarehouseDistanceTable.build(roadGraph, almacenesPrincipales))
+                .timeDependentRouter(TimeDependentRouter.build(roadGraph, blockages, locationNames))
+                .build();
+        this.blockagePublisher = new BlockagePublisher(originalTimeMatrix, routingIndexes, routeCache);
+        dataLoader.precomputeAlternativeRoutes(routeCache, roadGraph, locationNames,
+                DataLoader.warehouseToCapitalPairs(almacenesPrincipales, locationUbigeos), ALTERNATIVE_ROUTES_K);
+        startRouteWarmup(dataLoader);
         updateBlockages(initialSimulationTime, allBlockages);
     }
 
+    /**
+     * Calcula en segundo plano las rutas de los almacenes principales a todas las ubicaciones sobre el grafo sin
+     * bloqueos, para que el primer día simulado no espere por fallos de caché. Empieza cuando termina la precarga
+     * de routeCache.
+     */
+    private void startRouteWarmup(DataLoader dataLoader) {
+        // Copias locales: reset() reemplaza los campos mientras el precalentamiento anterior puede seguir activo
+        long[][] baseMatrix = timeMatrix;
+        List<String> names = locationNames;
+        List<String> ubigeos = locationUbigeos;
+        RoutingIndexes indexes = routingIndexes;
+        dataLoader.warmUpRouteCache(routeCacheLoad, routeCache, almacenesPrincipales, ubigeos,
+                () -> new ShortestPathEngine(baseMatrix, names, ubigeos, indexes));
+    }
+
 
     // Getter para breakdownLogs
     public Map<String, List<String>> getBreakdownLogs() {
@@ -265,17 +336,22 @@ public class SimulationState {
         return warehouseManager;
     }
 
-    public void updateBlockages(LocalDateTime currentTime, List<Blockage> allBlockages) {
+    /**
+     * Recalcula los bloqueos activos. Si cambiaron, publica una vista con la época siguiente y la matriz de tiempos
+     * correspondiente, y sincroniza con ella los índices que dependen de los bloqueos; si no, no hace nada.
+     */
+    public synchronized void updateBlockages(LocalDateTime currentTime, List<Blockage> allBlockages) {
         logger.info("Actualizando bloqueos en tiempo: " + currentTime);
-
-        // Remover bloqueos que han expirado
-        List<Blockage> expiredBlockages = activeBlockages.stream()
-                .filter(blockage -> currentTime.isAfter(blockage.getEndTime()))
-                .collect(Collectors.toList());
-
-        for (Blockage expiredBlockage : expiredBlockages) {
-            activeBlockages.remove(expiredBlockage);
-            logger.info("Bloqueo expirado y removido: " + blockageToString(expiredBlockage));
+        // Conservar los bloqueos que no han expirado
+        Set<Blockage> active = new LinkedHashSet<>();
+        int expiredCount = 0;
+        for (Blockage blockage : blockagePublisher.getSnapshot().getBlockages()) {
+            if (currentTime.isAfter(blockage.getEndTime())) {
+                expiredCount++;
+                logger.info("Bloqueo expirado y removido: " + blockageToString(blockage));
+            } else {
+                active.add(blockage);
+            }
         }
 
         // Añadir nuevos bloqueos activos
@@ -283,20 +359,18 @@ public class SimulationState {
         for (Blockage blockage : allBlockages) {
             if (!currentTime.isBefore(blockage.getStartTime()) &&
                     currentTime.isBefore(blockage.getEndTime()) &&
-                    !activeBlockages.contains(blockage)) {
-                activeBlockages.add(blockage);
+                    active.add(blockage)) {
                 newBlockagesCount++;
                 logger.info("Nuevo bloqueo activado: " + blockageToString(blockage));
             }
         }
 
         logger.info("Resumen de actualización de bloqueos:");
-        logger.info("- Bloqueos expirados: " + expiredBlockages.size());
+        logger.info("- Bloqueos expirados: " + expiredCount);
         logger.info("- Nuevos bloqueos activados: " + newBlockagesCount);
-        logger.info("- Total de bloqueos activos: " + activeBlockages.size());
+        logger.info("- Total de bloqueos activos: " + active.size());
 
-        // Actualizar la matriz de tiempo
-        updateTimeMatrix();
+        blockagePublisher.publish(active);
     }
 
     private String blockageToString(Blockage blockage) {
@@ -307,26 +381,6 @@ public class SimulationState {
                 blockage.getEndTime());
     }
 
-    private void updateTimeMatrix() {
-        logger.info("Actualizando matriz de tiempo basada en bloqueos activos");
-
-        // Restaurar la matriz original
-        for (int i = 0; i < currentTimeMatrix.length; i++) {
-            System.arraycopy(timeMatrix[i], 0, currentTimeMatrix[i], 0, timeMatrix[i].length);
-        }
-
-        // Aplicar bloqueos activos
-        for (Blockage blockage : activeBlockages) {
-            int fromIndex = locationIndices.get(blockage.getOriginUbigeo());
-            int toIndex = locationIndices.get(blockage.getDestinationUbigeo());
-            currentTimeMatrix[fromIndex][toIndex] = Long.MAX_VALUE;
-            currentTimeMatrix[toIndex][fromIndex] = Long.MAX_VALUE; // Asumiendo que las rutas son bidireccionales
-            logger.info("Ruta bloqueada: " + blockage.getOriginUbigeo() + " -> " + blockage.getDestinationUbigeo());
-        }
-
-        logger.info("Matriz de tiempo actualizada con " + activeBlockages.size() + " bloqueos aplicados");
-    }
-
     public JsonObject getCurrentPositionsGeoJSON() {
         JsonObject featureCollection = new JsonObject();
         featureCollection.addProperty("type", "FeatureCollection");
@@ -507,28 +561,36 @@ public class SimulationState {
 
     private void calculateNewRoutes(List<Vehicle> vehicles) {
         Map<String, String> vehicleDestinations = new HashMap<>();
-        Map<String, Map<String, Long>> vehicleRouteTimes = new HashMap<>();
         Set<RouteRequest> routesToCalculate = new HashSet<>();
 
-        // Paso 1: Identificar rutas necesarias y buscar en caché
+        // Paso 1: Elegir el almacén más cercano de cada vehículo (consulta O(1) en la tabla precalculada)
         for (Vehicle vehicle : vehicles) {
-            String currentLocation = vehicle.getCurrentLocationUbigeo();
-            vehicleRouteTimes.put(vehicle.getCode(), new HashMap<>());
-
-            for (String warehouseUbigeo : almacenesPrincipales) {
-                if (!warehouseUbigeo.equals(currentLocation)) {
-                    List<RouteSegment> cachedRoute = routeCache.getRoute(warehouseUbigeo, currentLocation, activeBlockages);
-                    if (cachedRoute != null) {
-                        long routeTime = calculateRouteTime(cachedRoute);
-                        vehicleRouteTimes.get(vehicle.getCode()).put(warehouseUbigeo, routeTime);
-                    } else {
-                        routesToCalculate.add(new RouteRequest(currentLocation, warehouseUbigeo));
-                    }
+            String originUbigeo = vehicle.getCurrentLocationUbigeo();
+            String bestDestination = routingIndexes.getWarehouseDistanceTable().getNearestWarehouse(originUbigeo);
+            if (bestDestination == null) {
+                logger.warning(String.format("No hay almacén principal alcanzable desde %s para el vehículo %s",
+                        originUbigeo, vehicle.getCode()));
+                continue;
+            }
+            vehicleDestinations.put(vehicle.getCode(), bestDestination);
+
+            String originName = locations.get(originUbigeo).getProvince();
+            String destinationName = locations.get(bestDestination).getProvince();
+            logger.info(String.format("Vehículo %s en %s (%s) asignado al mejor destino %s (%s), tiempo estimado: %d minutos",
+                    vehicle.getCode(), originName, originUbigeo, destinationName, bestDestination,
+                    routingIndexes.getWarehouseDistanceTable().getTimeToNearestWarehouse(originUbigeo)));
+
+            if (routeCache.getRoute(originUbigeo, bestDestination) == null) {
+                if (routeCache.isUnreachable(originUbigeo, bestDestination)) {
+                    logger.info(String.format("Sin ruta de %s a %s con los bloqueos actuales; no se vuelve a calcular",
+                            originUbigeo, bestDestination));
+                } else {
+                    routesToCalculate.add(new RouteRequest(originUbigeo, bestDestination));
                 }
             }
         }
 
-        // Paso 2: Calcular rutas faltantes
+        // Paso 2: Calcular solo las rutas hacia los almacenes elegidos que no están en caché
         if (!routesToCalculate.isEmpty()) {
             logger.info(String.format("Calculando %d rutas faltantes...", routesToCalculate.size()));
             Map<RouteRequest, List<RouteSegment>> calculatedRoutes = batchCalculateRoutes(routesToCalculate);
@@ -536,20 +598,11 @@ public class SimulationState {
             for (Map.Entry<RouteRequest, List<RouteSegment>> entry : calculatedRoutes.entrySet()) {
                 RouteRequest request = entry.getKey();
                 List<RouteSegment> route = entry.getValue();
-                long routeTime = calculateRouteTime(route);
 
                 logger.info(String.format("Ruta calculada: Origen: %s, Destino: %s, Tiempo: %d minutos",
-                        request.start, request.end, routeTime));
-
-                for (Vehicle vehicle : vehicles) {
-                    if (vehicle.getCurrentLocationUbigeo().equals(request.start)) {
-                        vehicleRouteTimes.get(vehicle.getCode()).put(request.end, routeTime);
-                        logger.info(String.format("Tiempo de ruta actualizado para vehículo %s: Destino %s, Tiempo: %d minutos",
-                                vehicle.getCode(), request.end, routeTime));
-                    }
-                }
+                        request.start, request.end, calculateRouteTime(route)));
 
-                routeCache.putRoute(request.end, request.start, route, activeBlockages);
+                routeCache.putRoute(request.start, request.end, route, getActiveBlockages());
                 logger.info(String.format("Ruta almacenada en caché: Origen: %s, Destino: %s, Segmentos: %d",
                         request.start, request.end, route.size()));
             }
@@ -557,24 +610,13 @@ public class SimulationState {
             logger.info("No hay rutas faltantes para calcular.");
         }
 
-        // Paso 3: Determinar el mejor destino para cada vehículo
-        for (Vehicle vehicle : vehicles) {
-            String bestDestination = findBestDestination(vehicle, vehicleRouteTimes.get(vehicle.getCode()));
-            vehicleDestinations.put(vehicle.getCode(), bestDestination);
-
-            String originUbigeo = vehicle.getCurrentLocationUbigeo();
-            String originName = locations.get(originUbigeo).getProvince();
-            String destinationName = locations.get(bestDestination).getProvince();
-
-            logger.info(String.format("Vehículo %s en %s (%s) asignado al mejor destino %s (%s)",
-                    vehicle.getCode(), originName, originUbigeo, destinationName, bestDestination));
-        }
-
         // Paso 4: Asignar rutas a vehículos
         for (Vehicle vehicle : vehicles) {
             String destination = vehicleDestinations.get(vehicle.getCode());
-            List<RouteSegment> route = routeCache.getRoute(vehicle.getCurrentLocationUbigeo(), destination, activeBlockages);
+            List<RouteSegment> route = destination == null ? null : routeCache.getRoute(vehicle.getCurrentLocationUbigeo(), destination);
             if (route != null) {
+                // La ruta en caché solo considera los bloqueos activos; se ajusta si cruza una ventana futura
+                route = routingIndexes.getTimeDependentRouter().adjustRoute(route, currentTime);
                 vehicle.setRoute(route);
                 vehicle.startWarehouseJourney(currentTime, destination);
                 logger.info(String.format("Vehículo %s asignado a ruta hacia %s (%s)", vehicle.getCode(), locations.get(destination).getProvince(), destination));
@@ -596,6 +638,10 @@ public class SimulationState {
     }
 
     private Map<RouteRequest, List<RouteSegment>> batchCalculateRoutes(Set<RouteRequest> routesToCalculate) {
+        // Época leída antes de resolver: los pares sin camino se registran con los bloqueos usados
+        long blockageEpoch = routeCache.getBlockageEpoch();
+        // Solicitudes aceptadas, en el mismo orden que starts/ends y que las rutas devueltas
+        List<RouteRequest> accepted = new ArrayList<>();
         List<Integer> starts = new ArrayList<>();
         List<Integer> ends = new ArrayList<>();
 
@@ -606,46 +652,70 @@ public class SimulationState {
                 logger.warning(String.format("Ubigeo de inicio o fin no encontrado en locationIndices: %s -> %s",
                         request.start, request.end));
             } else {
+                accepted.add(request);
                 starts.add(startIndex);
                 ends.add(endIndex);
             }
         }
 
+        if (accepted.isEmpty()) {
+            logger.warning("No hay rutas válidas para calcular.");
+            return Collections.emptyMap();
+        }
+
         DataModel data = new DataModel(getCurrentTimeMatrix(), getActiveBlockages(),
                 starts.stream().mapToInt(Integer::intValue).toArray(),
                 ends.stream().mapToInt(Integer::intValue).toArray(),
                 locationNames, locationUbigeos);
+        // Solo una búsqueda de caminos mínimos prueba que el par no tiene camino; OR-Tools puede no hallar solución
+        boolean exactSearch = data.hasIndependentPairs();
 
-        List<List<RouteSegment>> calculatedRoutes = calcularRutasHaciaAlmacen(data, data.starts, data.ends);
+        List<List<RouteSegment>> calculatedRoutes = calcularRutasHaciaAlmacen(data, data.starts, data.ends,
+                routingIndexes);
 
         if (calculatedRoutes.isEmpty()) {
             logger.warning("No se pudieron calcular rutas. 'calculatedRoutes' está vacío.");
-            // Maneja este caso, por ejemplo, devolviendo un mapa vacío o lanzando una excepción controlada
             return Collections.emptyMap();
         }
 
         Map<RouteRequest, List<RouteSegment>> result = new HashMap<>();
-        int index = 0;
-        for (RouteRequest request : routesToCalculate) {
-            if (index < calculatedRoutes.size()) {
-                result.put(request, calculatedRoutes.get(index));
+        for (int i = 0; i < accepted.size(); i++) {
+            RouteRequest request = accepted.get(i);
+            List<RouteSegment> route = i < calculatedRoutes.size() ? calculatedRoutes.get(i) : null;
+            if (route != null && !route.isEmpty()) {
+                result.put(request, route);
             } else {
                 logger.warning(String.format("No hay ruta calculada para la solicitud %s -> %s", request.start, request.end));
+                if (exactSearch && route != null && !request.start.equals(request.end)) {
+                    routeCache.markUnreachable(request.start, request.end, blockageEpoch);
+                }
             }
-            index++;
         }
 
         return result;
     }
 
-    private static List<List<RouteSegment>> calcularRutasHaciaAlmacen(DataModel data, int[] start, int[] end) {
+    private static List<List<RouteSegment>> calcularRutasHaciaAlmacen(DataModel data, int[] start, int[] end,
+                                                                     RoutingIndexes routingIndexes) {
+        if (data.hasIndependentPairs()) {
+            // Cada vehículo va de su ubicación a un almacén: basta con el camino mínimo de cada par
+            try (Timer.Context ignored = metricRegistry.timer(MetricRegistry.name(SimulationState.class,
+                    "calcularRutasHaciaAlmacen", "shortestPaths")).time()) {
+                return ShortestPathEngine.solveIndependentPairs(data, routingIndexes);
+            }
+        }
+
         RoutingIndexManager manager = createRoutingIndexManager(data, start, end);
         RoutingModel routing = createRoutingModel(manager, data);
         RoutingSearchParameters searchParameters = createSearchParameters();
 
         logger.info("Iniciando la resolución del modelo de rutas para rutas hacia almacenes.");
+        Timer.Context solveTimer = metricRegistry.timer(MetricRegistry.name(SimulationState.class,
+                "calcularRutasHaciaAlmacen", "orTools")).time();
         Assignment solution = routing.solveWithParameters(searchParameters);
-        logger.info("Solución de rutas obtenida para rutas hacia almacenes.");
+        long elapsedMicros = solveTimer.stop() / 1_000;
+        logger.info(String.format("OR-Tools: solución de rutas hacia almacenes obtenida en %d µs (%.1f µs por consulta)",
+                elapsedMicros, (double) elapsedMicros / Math.max(1, data.vehicleNumber)));
 
         if (solution != null) {
             List<List<RouteSegment>> calculatedRoutes = extractCalculatedRoutesWithoutAssignments(manager, data, routing, solution);
@@ -703,13 +773,6 @@ public class SimulationState {
         return route.stream().mapToLong(RouteSegment::getDurationMinutes).sum();
     }
 
-    private String findBestDestination(Vehicle vehicle, Map<String, Long> routeTimes) {
-        return routeTimes.entrySet().stream()
-                .min(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(null);
-    }
-
     private static class RouteRequest {
         final String start;
         final String end;
@@ -744,7 +807,7 @@ public class SimulationState {
 
         for (String destination : potentialDestinations) {
             List<VehicleAssignment> singleAssignment = Collections.singletonList(new VehicleAssignment(vehicle, null, 0));
-            DataModel data = new DataModel(timeMatrix, activeBlockages, singleAssignment, locationIndices, locationNames, locationUbigeos);
+            DataModel data = new DataModel(timeMatrix, getActiveBlockages(), singleAssignment, locationIndices, locationNames, locationUbigeos);
             int[] starts = {locationIndices.get(vehicle.getCurrentLocationUbigeo())};
             int[] ends = {locationIndices.get(destination)};
 
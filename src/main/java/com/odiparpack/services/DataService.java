@@ -2,9 +2,19 @@ package com.odiparpack.services;
 
 import com.odiparpack.DataLoader;
 import com.odiparpack.models.*;
+import com.odiparpack.simulation.route.AllPairsTable;
+import com.odiparpack.simulation.route.ContractionHierarchy;
+import com.odiparpack.simulation.route.LandmarkTable;
+import com.odiparpack.simulation.route.OverlayGraph;
+import com.odiparpack.simulation.route.RoadGraph;
+import com.odiparpack.simulation.route.RouteCacheWarmup;
+import com.odiparpack.simulation.route.ShortestPathEngine;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 public class DataService {
     private DataLoader dataLoader;
@@ -37,7 +47,48 @@ public class DataService {
         return dataLoader.loadMaintenanceSchedule(filePath);
     }
 
-    public long[][] createTimeMatrix(List<Location> locationList, List<Edge> edges) {
-        return dataLoader.createTimeMatrix(locationList, edges);
+    public RoadGraph createRoadGraph(List<Location> locationList, List<Edge> edges) {
+        return dataLoader.createRoadGraph(locationList, edges);
+    }
+
+    public long[][] createTimeMatrix(RoadGraph roadGraph) {
+        return dataLoader.createTimeMatrix(roadGraph);
+    }
+
+    public AllPairsTable createAllPairsTable(long[][] timeMatrix, String locationsFile, String edgesFile) {
+        return dataLoader.createAllPairsTable(timeMatrix, locationsFile, edgesFile);
+    }
+
+    public ContractionHierarchy createContractionHierarchy(RoadGraph roadGraph) {
+        return dataLoader.createContractionHierarchy(roadGraph);
+    }
+
+    public OverlayGraph createOverlayGraph(RoadGraph roadGraph, Collection<Location> locations) {
+        return dataLoader.createOverlayGraph(roadGraph, locations);
+    }
+
+    public LandmarkTable createLandmarkTable(RoadGraph roadGraph) {
+        return dataLoader.createLandmarkTable(roadGraph);
+    }
+
+    public void precomputeAlternativeRoutes(RouteCache routeCache, RoadGraph roadGraph, List<String> locationNames,
+                                            List<String[]> hotPairs, int k) {
+        dataLoader.precomputeAlternativeRoutes(routeCache, roadGraph, locationNames, hotPairs, k);
+    }
+
+    public CompletableFuture<RouteCacheWarmup> warmUpRouteCache(CompletableFuture<Integer> preload,
+                                                                RouteCache routeCache,
+                                                                Collection<String> warehouseUbigeos,
+                                                                List<String> locationUbigeos,
+                                                                Supplier<ShortestPathEngine> engines) {
+        return dataLoader.warmUpRouteCache(preload, routeCache, warehouseUbigeos, locationUbigeos, engines);
+    }
+
+    public CompletableFuture<Integer> loadRouteCacheAsync(RouteCache routeCache, RoadGraph roadGraph) {
+        return dataLoader.loadRouteCacheAsync(routeCache, roadGraph);
+    }
+
+    public void saveRouteCache(RouteCache routeCache, RoadGraph roadGraph) {
+        dataLoader.saveRouteCache(routeCache, roadGraph);
     }
 }
@@ -1,79 +1,64 @@
 package com.odiparpack.simulation.blockage;
 
 import com.odiparpack.models.Blockage;
+import com.odiparpack.models.RouteCache;
+import com.odiparpack.simulation.route.RoutingIndexes;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
+/**
+ * Mantiene los bloqueos activos y publica, en cada cambio, una BlockageSnapshot inmutable con una época nueva
+ * y la matriz de tiempos correspondiente (ver {@link BlockagePublisher}). Las lecturas (getSnapshot,
+ * getActiveBlockages, getCurrentTimeMatrix) no bloquean y nunca ven un estado a medio actualizar.
+ */
 public class BlockageManager {
-    private static final Logger logger = Logger.getLogger(BlockageManager.class.getName());
+    private final List<Blockage> allBlockages;
+    private final BlockagePublisher publisher;
 
-    private List<Blockage> allBlockages;
-    private List<Blockage> activeBlockages;
-    private long[][] originalTimeMatrix;
-    private long[][] currentTimeMatrix;
-    private Map<String, Integer> locationIndices;
-
-    public BlockageManager(List<Blockage> allBlockages, long[][] timeMatrix, Map<String, Integer> locationIndices) {
+    public BlockageManager(List<Blockage> allBlockages, long[][] timeMatrix, RoutingIndexes indexes,
+                           RouteCache routeCache) {
         this.allBlockages = allBlockages;
-        this.activeBlockages = new ArrayList<>();
-        this.originalTimeMatrix = timeMatrix;
-        // Crear una copia de la matriz de tiempo original para modificaciones
-        this.currentTimeMatrix = Arrays.stream(timeMatrix)
-                .map(long[]::clone)
-                .toArray(long[][]::new);
-        this.locationIndices = locationIndices;
+        this.publisher = new BlockagePublisher(timeMatrix, indexes, routeCache);
     }
 
-    public void updateBlockages(LocalDateTime currentTime) {
-        // Remover bloqueos que han expirado
-        List<Blockage> expiredBlockages = activeBlockages.stream()
-                .filter(blockage -> currentTime.isAfter(blockage.getEndTime()))
-                .collect(Collectors.toList());
-
-        activeBlockages.removeAll(expiredBlockages);
-
-        // Añadir nuevos bloqueos activos
+    /**
+     * Recalcula los bloqueos activos. Si cambiaron, publica una vista con la época siguiente y sincroniza la
+     * matriz de tiempos y los índices que dependen de los bloqueos; si no, no hace nada.
+     */
+    public synchronized void updateBlockages(LocalDateTime currentTime) {
+        // Conservar los bloqueos que no han expirado y añadir los que empiezan
+        Set<Blockage> active = new LinkedHashSet<>();
+        for (Blockage blockage : publisher.getSnapshot().getBlockages()) {
+            if (!currentTime.isAfter(blockage.getEndTime())) {
+                active.add(blockage);
+            }
+        }
         for (Blockage blockage : allBlockages) {
-            if (!currentTime.isBefore(blockage.getStartTime()) &&
-                    currentTime.isBefore(blockage.getEndTime()) &&
-                    !activeBlockages.contains(blockage)) {
-                activeBlockages.add(blockage);
+            if (!currentTime.isBefore(blockage.getStartTime()) && currentTime.isBefore(blockage.getEndTime())) {
+                active.add(blockage);
             }
         }
-
-        // Actualizar la matriz de tiempo
-        updateTimeMatrix();
+        publisher.publish(active);
     }
 
-    private void updateTimeMatrix() {
-        // Restaurar la matriz original
-        for (int i = 0; i < currentTimeMatrix.length; i++) {
-            System.arraycopy(originalTimeMatrix[i], 0, currentTimeMatrix[i], 0, originalTimeMatrix[i].length);
-        }
-
-        // Aplicar bloqueos activos
-        for (Blockage blockage : activeBlockages) {
-            Integer fromIndex = locationIndices.get(blockage.getOriginUbigeo());
-            Integer toIndex = locationIndices.get(blockage.getDestinationUbigeo());
-            if (fromIndex != null && toIndex != null) {
-                currentTimeMatrix[fromIndex][toIndex] = Long.MAX_VALUE;
-                currentTimeMatrix[toIndex][fromIndex] = Long.MAX_VALUE; // Asumiendo rutas bidireccionales
-            } else {
-                logger.warning("Índices de ubicación no encontrados para bloqueo: " + blockage);
-            }
-        }
+    /**
+     * @return Vista inmutable de los bloqueos activos, con su época.
+     */
+    public BlockageSnapshot getSnapshot() {
+        return publisher.getSnapshot();
     }
 
+    /**
+     * @return Bloqueos activos de la última época (lista no modificable).
+     */
     public List<Blockage> getActiveBlockages() {
-        return new ArrayList<>(activeBlockages);
+        return publisher.getSnapshot().getBlockages();
     }
 
     public long[][] getCurrentTimeMatrix() {
         // Devolver una copia para evitar modificaciones externas
-        return Arrays.stream(currentTimeMatrix)
+        return Arrays.stream(publisher.getCurrentTimeMatrix())
                 .map(long[]::clone)
                 .toArray(long[][]::new);
     }
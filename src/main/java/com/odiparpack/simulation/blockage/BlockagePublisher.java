@@ -0,0 +1,107 @@
+package com.odiparpack.simulation.blockage;
+
+import com.odiparpack.models.Blockage;
+import com.odiparpack.models.RouteCache;
+import com.odiparpack.simulation.route.AllPairsTable;
+import com.odiparpack.simulation.route.OverlayGraph;
+import com.odiparpack.simulation.route.RoadGraph;
+import com.odiparpack.simulation.route.RoutingIndexes;
+import com.odiparpack.simulation.route.WarehouseDistanceTable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.logging.Logger;
+
+/**
+ * Publica los cambios de bloqueos: arma la BlockageSnapshot de la época siguiente, la matriz de tiempos que la
+ * aplica y sincroniza con ella los índices que dependen de los bloqueos. Lo usan BlockageManager y
+ * models.SimulationState, que solo deciden qué bloqueos están activos.
+ * <p>
+ * La vista y la matriz se reemplazan completas y se leen sin bloqueo; los índices se actualizan después de
+ * publicar la vista, en el mismo orden en ambos flujos.
+ */
+public final class BlockagePublisher {
+    private static final Logger logger = Logger.getLogger(BlockagePublisher.class.getName());
+
+    private final RoadGraph roadGraph;
+    private final long[][] baseTimeMatrix;
+    private final AllPairsTable allPairsTable;
+    private final WarehouseDistanceTable warehouseDistanceTable;
+    private final OverlayGraph overlayGraph;
+    private final RouteCache routeCache;
+    private volatile BlockageSnapshot snapshot;
+    private volatile long[][] currentTimeMatrix;
+
+    /**
+     * Arranca en la época 0, sin bloqueos. Se sincronizan la tabla de todos los pares, la de almacenes, el
+     * overlay y la caché de rutas; los índices que falten (por ejemplo, AllPairsTable en redes grandes) se omiten.
+     *
+     * @param baseTimeMatrix Matriz de tiempos sin bloqueos (no se modifica).
+     * @param indexes        Índices de ruteo; su grafo CSR define los arcos de cada vista.
+     * @param routeCache     Caché de rutas (puede ser null).
+     */
+    public BlockagePublisher(long[][] baseTimeMatrix, RoutingIndexes indexes, RouteCache routeCache) {
+        this.roadGraph = indexes.getRoadGraph();
+        this.baseTimeMatrix = baseTimeMatrix;
+        this.allPairsTable = indexes.getAllPairsTable();
+        this.warehouseDistanceTable = indexes.getWarehouseDistanceTable();
+        this.overlayGraph = indexes.getOverlayGraph();
+        this.routeCache = routeCache;
+        this.snapshot = BlockageSnapshot.empty(roadGraph);
+        this.currentTimeMatrix = Arrays.stream(baseTimeMatrix)
+                .map(long[]::clone)
+                .toArray(long[][]::new);
+    }
+
+    /**
+     * Publica active como los bloqueos de la época siguiente. Si coincide con los de la vista actual no hace nada.
+     *
+     * @param active Bloqueos activos (se copian).
+     * @return true si se publicó una época nueva.
+     */
+    public synchronized boolean publish(Collection<Blockage> active) {
+        BlockageSnapshot previous = snapshot;
+        if (active.size() == previous.getBlockages().size() && active.containsAll(previous.getBlockages())) {
+            return false;
+        }
+
+        BlockageSnapshot next = BlockageSnapshot.of(previous.getEpoch() + 1, active, roadGraph);
+        if (!next.sameArcsAs(previous)) {
+            currentTimeMatrix = next.applyTo(baseTimeMatrix);
+        }
+        snapshot = next;
+        logger.info(String.format("Bloqueos época %d: %d activos, %d arcos bloqueados",
+                next.getEpoch(), next.getBlockages().size(), next.getBlockedArcCount()));
+
+        // Reparar solo las filas de la tabla de todos los pares afectadas por el cambio de bloqueos
+        if (allPairsTable != null) {
+            allPairsTable.applyBlockages(next);
+        }
+        if (warehouseDistanceTable != null) {
+            warehouseDistanceTable.applyBlockages(next);
+        }
+        // Re-personalizar solo las celdas del overlay que contienen tramos cuyo estado cambió
+        if (overlayGraph != null) {
+            overlayGraph.applyBlockages(next);
+        }
+        // Marcar como inválidas solo las rutas en caché que recorren tramos recién bloqueados
+        if (routeCache != null) {
+            routeCache.applyBlockages(next);
+        }
+        return true;
+    }
+
+    /**
+     * @return Vista inmutable de los bloqueos activos, con su época.
+     */
+    public BlockageSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return Matriz de tiempos de la vista actual. No se modifica después de publicarla.
+     */
+    public long[][] getCurrentTimeMatrix() {
+        return currentTimeMatrix;
+    }
+}
@@ -0,0 +1,145 @@
+package com.odiparpack.simulation.blockage;
+
+import com.odiparpack.models.Blockage;
+import com.odiparpack.simulation.route.RoadGraph;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Vista inmutable de los bloqueos activos: número de época, la lista de bloqueos y un BitSet sobre los arcos del
+ * grafo CSR con los dos sentidos de cada tramo bloqueado.
+ * <p>
+ * BlockagePublisher (para BlockageManager o models.SimulationState) publica una instancia nueva cada vez que
+ * cambia el conjunto de bloqueos activos, con la época siguiente. Los lectores la obtienen sin bloqueo y
+ * responden "¿está bloqueado u→v?" en O(1), con una vista consistente aunque otro hilo esté actualizando los
+ * bloqueos. Los índices que dependen de los bloqueos (AllPairsTable, WarehouseDistanceTable, OverlayGraph,
+ * RouteCache) se sincronizan con la vista en lugar de reconstruir cada uno su conjunto de tramos a partir de los
+ * ubigeos.
+ */
+public final class BlockageSnapshot {
+    private static final Logger logger = Logger.getLogger(BlockageSnapshot.class.getName());
+
+    private final long epoch;
+    private final List<Blockage> blockages;
+    private final BitSet blockedArcs;
+    private final RoadGraph graph;
+
+    private BlockageSnapshot(long epoch, List<Blockage> blockages, BitSet blockedArcs, RoadGraph graph) {
+        this.epoch = epoch;
+        this.blockages = blockages;
+        this.blockedArcs = blockedArcs;
+        this.graph = graph;
+    }
+
+    /**
+     * @return Vista de época 0, sin bloqueos.
+     */
+    public static BlockageSnapshot empty(RoadGraph graph) {
+        return new BlockageSnapshot(0, Collections.emptyList(), new BitSet(graph.arcCount()), graph);
+    }
+
+    /**
+     * Construye la vista de una época. Los bloqueos se consideran bidireccionales; los que no corresponden a un
+     * tramo del grafo quedan en la lista pero no marcan ningún arco.
+     *
+     * @param epoch     Época de la vista.
+     * @param blockages Bloqueos activos (se copian).
+     * @param graph     Grafo CSR cuyos arcos identifican los tramos.
+     * @return Vista inmutable.
+     */
+    public static BlockageSnapshot of(long epoch, Collection<Blockage> blockages, RoadGraph graph) {
+        BitSet blockedArcs = new BitSet(graph.arcCount());
+        for (Blockage blockage : blockages) {
+            int from = graph.indexOf(blockage.getOriginUbigeo());
+            int to = graph.indexOf(blockage.getDestinationUbigeo());
+            if (from < 0 || to < 0) {
+                logger.warning("Índices de ubicación no encontrados para bloqueo: " + blockage);
+                continue;
+            }
+            int arc = graph.findArc(from, to);
+            if (arc >= 0) blockedArcs.set(arc);
+            arc = graph.findArc(to, from);
+            if (arc >= 0) blockedArcs.set(arc);
+        }
+        return new BlockageSnapshot(epoch, Collections.unmodifiableList(new ArrayList<>(blockages)), blockedArcs, graph);
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return Bloqueos activos en esta época (lista no modificable).
+     */
+    public List<Blockage> getBlockages() {
+        return blockages;
+    }
+
+    /**
+     * @return Grafo CSR sobre cuyos arcos se definen los bloqueos.
+     */
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return Copia del conjunto de arcos bloqueados.
+     */
+    public BitSet getBlockedArcs() {
+        return (BitSet) blockedArcs.clone();
+    }
+
+    /**
+     * @return true si el arco del grafo CSR está bloqueado.
+     */
+    public boolean isBlocked(int arc) {
+        return blockedArcs.get(arc);
+    }
+
+    /**
+     * @return true si el tramo directo from→to existe y está bloqueado.
+     */
+    public boolean isBlocked(int from, int to) {
+        int arc = graph.findArc(from, to);
+        return arc >= 0 && blockedArcs.get(arc);
+    }
+
+    /**
+     * @return Siguiente arco bloqueado a partir de fromArc (inclusive), o -1 si no hay más.
+     */
+    public int nextBlockedArc(int fromArc) {
+        return blockedArcs.nextSetBit(fromArc);
+    }
+
+    /**
+     * @return Número de arcos bloqueados (dos por tramo).
+     */
+    public int getBlockedArcCount() {
+        return blockedArcs.cardinality();
+    }
+
+    /**
+     * @return true si esta vista bloquea exactamente los mismos arcos que other.
+     */
+    public boolean sameArcsAs(BlockageSnapshot other) {
+        return blockedArcs.equals(other.blockedArcs);
+    }
+
+    /**
+     * Copia la matriz base y cierra los arcos bloqueados de la vista; la matriz se devuelve ya terminada para
+     * publicarla de una vez.
+     *
+     * @param baseMatrix Matriz de tiempos sin bloqueos, indexada como el grafo.
+     * @return Matriz nueva con Long.MAX_VALUE en los arcos bloqueados.
+     */
+    public long[][] applyTo(long[][] baseMatrix) {
+        long[][] matrix = Arrays.stream(baseMatrix)
+                .map(long[]::clone)
+                .toArray(long[][]::new);
+        for (int arc = blockedArcs.nextSetBit(0); arc >= 0; arc = blockedArcs.nextSetBit(arc + 1)) {
+            matrix[graph.source(arc)][graph.target(arc)] = Long.MAX_VALUE;
+        }
+        return matrix;
+    }
+}
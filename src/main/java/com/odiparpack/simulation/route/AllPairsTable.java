@@ -0,0 +1,472 @@
+package com.odiparpack.simulation.route;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.odiparpack.simulation.blockage.BlockageSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Tabla de caminos mínimos entre todos los pares de nodos, con matrices de siguiente salto y de predecesor.
+ * Se construye una vez al arrancar ejecutando N Dijkstra en paralelo (uno por origen) sobre el pool fork-join,
+ * de modo que cualquier ruta se reconstruye en O(longitud del camino) sin invocar a un solver.
+ * <p>
+ * La tabla es dinámica: al activarse o expirar un bloqueo solo se recalculan las filas (orígenes) cuyo
+ * árbol de caminos mínimos usaba el tramo bloqueado o puede mejorar con el tramo liberado.
+ * <p>
+ * La tabla del grafo sin bloqueos puede guardarse en un archivo binario versionado y cargarse con un
+ * MappedByteBuffer de solo lectura, de modo que un arranque no calcula caminos y varias JVM con el mismo archivo
+ * comparten sus páginas en la caché del sistema operativo. Las filas siguen leyéndose del archivo hasta que un
+ * bloqueo obliga a recalcularlas; desde entonces viven en el heap.
+ */
+public class AllPairsTable implements TravelTimeOracle {
+    private static final Logger logger = Logger.getLogger(AllPairsTable.class.getName());
+
+    public static final long UNREACHABLE = Long.MAX_VALUE;
+
+    // Archivo: cabecera (MAGIC, FORMAT_VERSION, clave, n) y luego dist, next y pred por filas, en big-endian
+    private static final int MAGIC = 0x4F445054; // "ODPT"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    private final int n;
+    private final long[][] baseMatrix; // Tiempos de tramos directos sin bloqueos
+    private final long[][] weights;    // Tiempos vigentes (con bloqueos aplicados)
+    private final long[][] dist;  // dist[s][t]: tiempo mínimo de s a t en minutos (fila null: se lee del archivo)
+    private final int[][] next;   // next[s][t]: primer nodo tras s en el camino a t (-1 si no hay camino)
+    private final int[][] pred;   // pred[s][t]: nodo anterior a t en el árbol de caminos mínimos de s
+    private final LongBuffer mappedDist; // Tabla base del archivo mapeado (null si se construyó en memoria)
+    private final IntBuffer mappedNext;
+    private final IntBuffer mappedPred;
+    private final Set<Integer> blockedEdges = new HashSet<>(); // claves from * n + to
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long buildMillis;
+
+    private AllPairsTable(long[][] timeMatrix, MappedByteBuffer mapped) {
+        this.n = timeMatrix.length;
+        this.baseMatrix = timeMatrix;
+        this.weights = Arrays.stream(timeMatrix)
+                .map(long[]::clone)
+                .toArray(long[][]::new);
+        this.dist = new long[n][];
+        this.next = new int[n][];
+        this.pred = new int[n][];
+        if (mapped != null) {
+            int cells = n * n;
+            this.mappedDist = region(mapped, HEADER_BYTES, cells * Long.BYTES).asLongBuffer();
+            this.mappedNext = region(mapped, HEADER_BYTES + cells * Long.BYTES, cells * Integer.BYTES).asIntBuffer();
+            this.mappedPred = region(mapped, HEADER_BYTES + cells * (Long.BYTES + Integer.BYTES), cells * Integer.BYTES)
+                    .asIntBuffer();
+        } else {
+            this.mappedDist = null;
+            this.mappedNext = null;
+            this.mappedPred = null;
+        }
+    }
+
+    /**
+     * @return Vista independiente de length bytes desde offset (sin ByteBuffer.slice(int, int), que es de Java 13).
+     */
+    private static ByteBuffer region(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset).limit(offset + length);
+        return view.slice();
+    }
+
+    /**
+     * Construye la tabla a partir de la matriz de tiempos de tramos directos.
+     *
+     * @param timeMatrix Matriz de tiempos (minutos) con Long.MAX_VALUE en los tramos inexistentes.
+     * @return Tabla de todos los pares.
+     */
+    public static AllPairsTable build(long[][] timeMatrix) {
+        AllPairsTable table = new AllPairsTable(timeMatrix, null);
+        long startNanos = System.nanoTime();
+
+        ThreadLocal<IndexedMinHeap> heaps = ThreadLocal.withInitial(() -> new IndexedMinHeap(table.n));
+        IntStream.range(0, table.n).parallel().forEach(source -> table.computeRow(source, heaps.get()));
+
+        table.buildMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        logger.info(String.format("Tabla de todos los pares construida: %d nodos en %d ms, %.2f MB",
+                table.n, table.buildMillis, table.getMemoryBytes() / (1024.0 * 1024.0)));
+        return table;
+    }
+
+    /**
+     * Carga la tabla del archivo si su clave coincide; si no existe, está corrupto o corresponde a otros datos
+     * de entrada, la construye y reescribe el archivo.
+     *
+     * @param file       Archivo de la tabla.
+     * @param timeMatrix Matriz de tiempos de tramos directos sin bloqueos.
+     * @param key        Huella de los archivos de entrada (ubicaciones y tramos).
+     * @return Tabla de todos los pares.
+     */
+    public static AllPairsTable loadOrBuild(Path file, long[][] timeMatrix, long key) {
+        if (Files.exists(file)) {
+            try {
+                AllPairsTable loaded = load(file, timeMatrix, key);
+                if (loaded != null) {
+                    return loaded;
+                }
+                logger.info("La tabla de todos los pares en " + file + " no corresponde a los datos actuales. Se reconstruye.");
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "No se pudo leer la tabla de todos los pares. Se reconstruye.", e);
+            }
+        }
+
+        AllPairsTable table = build(timeMatrix);
+        try {
+            table.save(file, key);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "No se pudo guardar la tabla de todos los pares en " + file, e);
+        }
+        return table;
+    }
+
+    /**
+     * Mapea el archivo en memoria de solo lectura.
+     *
+     * @return Tabla respaldada por el archivo, o null si la cabecera no coincide con la versión, la clave o el
+     * tamaño de la matriz.
+     */
+    public static AllPairsTable load(Path file, long[][] timeMatrix, long key) throws IOException {
+        long startNanos = System.nanoTime();
+        int n = timeMatrix.length;
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != fileBytes(n)) {
+                return null;
+            }
+            // El mapeo sigue siendo válido después de cerrar el canal
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION || mapped.getLong(8) != key
+                || mapped.getInt(16) != n) {
+            return null;
+        }
+        AllPairsTable table = new AllPairsTable(timeMatrix, mapped);
+        table.buildMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        logger.info(String.format("Tabla de todos los pares mapeada desde %s: %d nodos en %d ms", file, n,
+                table.buildMillis));
+        return table;
+    }
+
+    /**
+     * Escribe la tabla en un archivo temporal y lo mueve sobre el definitivo, para que otra JVM nunca mapee un
+     * archivo a medio escribir. Solo debe guardarse la tabla recién construida, antes de aplicar bloqueos.
+     */
+    private void save(Path file, long key) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(key).putInt(n).putInt(0).flip();
+            writeFully(channel, header);
+
+            ByteBuffer row = ByteBuffer.allocate(n * Long.BYTES);
+            for (int s = 0; s < n; s++) {
+                row.clear();
+                row.asLongBuffer().put(distRow(s));
+                writeFully(channel, row);
+            }
+            row.limit(n * Integer.BYTES);
+            for (int s = 0; s < n; s++) {
+                row.rewind();
+                row.asIntBuffer().put(nextRow(s));
+                writeFully(channel, row);
+            }
+            for (int s = 0; s < n; s++) {
+                row.rewind();
+                row.asIntBuffer().put(predRow(s));
+                writeFully(channel, row);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        logger.info("Tabla de todos los pares guardada en " + file);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static long fileBytes(int n) {
+        return HEADER_BYTES + (long) n * n * (Long.BYTES + 2 * Integer.BYTES);
+    }
+
+    /**
+     * Ejecuta Dijkstra completo desde source y rellena su fila de distancias, predecesores y siguientes saltos.
+     * La fila pasa a vivir en el heap aunque antes se leyera del archivo mapeado.
+     */
+    void computeRow(int source, IndexedMinHeap heap) {
+        if (dist[source] == null) {
+            dist[source] = new long[n];
+            next[source] = new int[n];
+            pred[source] = new int[n];
+        }
+        long[] d = dist[source];
+        int[] nx = next[source];
+        int[] p = pred[source];
+        Arrays.fill(d, UNREACHABLE);
+        Arrays.fill(p, -1);
+        Arrays.fill(nx, -1);
+        heap.clear();
+
+        d[source] = 0;
+        nx[source] = source;
+        heap.insertOrDecrease(source, 0);
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            long du = d[u];
+            // Los nodos se asientan en orden, así que el siguiente salto del predecesor ya es definitivo
+            if (u != source) {
+                int pu = p[u];
+                nx[u] = (pu == source) ? u : nx[pu];
+            }
+            long[] row = weights[u];
+            for (int v = 0; v < n; v++) {
+                long w = row[v];
+                if (w == Long.MAX_VALUE || v == u) continue;
+                long candidate = du + w;
+                if (candidate < d[v]) {
+                    d[v] = candidate;
+                    p[v] = u;
+                    heap.insertOrDecrease(v, candidate);
+                }
+            }
+        }
+    }
+
+    private long distAt(int from, int to) {
+        long[] row = dist[from];
+        return row != null ? row[to] : mappedDist.get(from * n + to);
+    }
+
+    private int nextAt(int from, int to) {
+        int[] row = next[from];
+        return row != null ? row[to] : mappedNext.get(from * n + to);
+    }
+
+    private int predAt(int from, int to) {
+        int[] row = pred[from];
+        return row != null ? row[to] : mappedPred.get(from * n + to);
+    }
+
+    private long[] distRow(int source) {
+        if (dist[source] != null) return dist[source];
+        long[] row = new long[n];
+        // Copia propia de la posición: varias lecturas pueden leer filas a la vez
+        mappedDist.duplicate().position(source * n).get(row);
+        return row;
+    }
+
+    private int[] nextRow(int source) {
+        if (next[source] != null) return next[source];
+        int[] row = new int[n];
+        mappedNext.duplicate().position(source * n).get(row);
+        return row;
+    }
+
+    private int[] predRow(int source) {
+        if (pred[source] != null) return pred[source];
+        int[] row = new int[n];
+        mappedPred.duplicate().position(source * n).get(row);
+        return row;
+    }
+
+    /**
+     * Sincroniza la tabla con la vista de bloqueos activos, aplicando solo la diferencia respecto a la
+     * sincronización anterior. La vista ya marca los dos sentidos de cada tramo bloqueado.
+     *
+     * @param blockages Vista de bloqueos sobre el grafo CSR, cuyos índices son los de la matriz.
+     * @return Número de filas recalculadas.
+     */
+    public synchronized int applyBlockages(BlockageSnapshot blockages) {
+        RoadGraph graph = blockages.getGraph();
+        Set<Integer> current = new HashSet<>();
+        for (int arc = blockages.nextBlockedArc(0); arc >= 0; arc = blockages.nextBlockedArc(arc + 1)) {
+            current.add(graph.source(arc) * n + graph.target(arc));
+        }
+
+        List<int[]> newlyBlocked = new ArrayList<>();
+        List<int[]> newlyUnblocked = new ArrayList<>();
+        for (Integer key : current) {
+            if (!blockedEdges.contains(key)) {
+                newlyBlocked.add(new int[]{key / n, key % n});
+            }
+        }
+        for (Integer key : blockedEdges) {
+            if (!current.contains(key)) {
+                newlyUnblocked.add(new int[]{key / n, key % n});
+            }
+        }
+        blockedEdges.clear();
+        blockedEdges.addAll(current);
+
+        return updateBlockedEdges(newlyBlocked, newlyUnblocked);
+    }
+
+    /**
+     * Aplica un cambio en el conjunto de tramos bloqueados y repara la tabla de forma incremental.
+     * Un tramo bloqueado invalida solo los orígenes cuyo árbol lo usaba (pred[s][v] == u); un tramo
+     * liberado solo afecta a los orígenes para los que mejora el camino (dist[s][u] + w &lt; dist[s][v]).
+     *
+     * @param newlyBlocked   Tramos dirigidos {desde, hasta} que pasan a estar bloqueados.
+     * @param newlyUnblocked Tramos dirigidos {desde, hasta} que dejan de estar bloqueados.
+     * @return Número de filas recalculadas.
+     */
+    public int updateBlockedEdges(Collection<int[]> newlyBlocked, Collection<int[]> newlyUnblocked) {
+        if (newlyBlocked.isEmpty() && newlyUnblocked.isEmpty()) {
+            return 0;
+        }
+        long startNanos = System.nanoTime();
+        int recomputed;
+
+        lock.writeLock().lock();
+        try {
+            BitSet affected = new BitSet(n);
+            for (int[] edge : newlyBlocked) {
+                int u = edge[0];
+                int v = edge[1];
+                if (weights[u][v] == Long.MAX_VALUE) continue;
+                weights[u][v] = Long.MAX_VALUE;
+                for (int source = 0; source < n; source++) {
+                    if (predAt(source, v) == u) {
+                        affected.set(source);
+                    }
+                }
+            }
+            for (int[] edge : newlyUnblocked) {
+                int u = edge[0];
+                int v = edge[1];
+                long w = baseMatrix[u][v];
+                if (w == Long.MAX_VALUE || weights[u][v] == w) continue;
+                weights[u][v] = w;
+                for (int source = 0; source < n; source++) {
+                    long du = distAt(source, u);
+                    if (du != UNREACHABLE && du + w < distAt(source, v)) {
+                        affected.set(source);
+                    }
+                }
+            }
+
+            ThreadLocal<IndexedMinHeap> heaps = ThreadLocal.withInitial(() -> new IndexedMinHeap(n));
+            affected.stream().parallel().forEach(source -> computeRow(source, heaps.get()));
+            recomputed = affected.cardinality();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        logger.info(String.format("Reparación incremental de la tabla: %d tramos bloqueados, %d liberados, "
+                        + "%d/%d filas recalculadas en %d µs",
+                newlyBlocked.size(), newlyUnblocked.size(), recomputed, n, (System.nanoTime() - startNanos) / 1_000));
+        return recomputed;
+    }
+
+    /**
+     * Registra el tiempo de construcción y la memoria de la tabla como métricas.
+     */
+    public void registerMetrics(MetricRegistry registry) {
+        String buildName = MetricRegistry.name(AllPairsTable.class, "buildMillis");
+        String memoryName = MetricRegistry.name(AllPairsTable.class, "memoryBytes");
+        registry.remove(buildName);
+        registry.remove(memoryName);
+        registry.register(buildName, (Gauge<Long>) () -> buildMillis);
+        registry.register(memoryName, (Gauge<Long>) this::getMemoryBytes);
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public long travelTime(int from, int to) {
+        return getTime(from, to);
+    }
+
+    /**
+     * @return Tiempo mínimo en minutos de from a to, o UNREACHABLE si no hay camino.
+     */
+    public long getTime(int from, int to) {
+        lock.readLock().lock();
+        try {
+            return distAt(from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Siguiente nodo tras from en el camino mínimo hacia to, o -1 si no hay camino.
+     */
+    public int getNextHop(int from, int to) {
+        lock.readLock().lock();
+        try {
+            return nextAt(from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reconstruye el camino mínimo recorriendo hacia atrás el árbol de predecesores de from.
+     *
+     * @return Secuencia de nodos (incluye extremos) o null si to no es alcanzable desde from.
+     */
+    public int[] path(int from, int to) {
+        lock.readLock().lock();
+        try {
+            if (distAt(from, to) == UNREACHABLE) {
+                return null;
+            }
+            int length = 1;
+            for (int v = to; v != from; v = predAt(from, v)) {
+                length++;
+            }
+            int[] path = new int[length];
+            int i = length - 1;
+            for (int v = to; v != from; v = predAt(from, v)) {
+                path[i--] = v;
+            }
+            path[0] = from;
+            return path;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    public long getMemoryBytes() {
+        return (long) n * n * (2L * Long.BYTES + 2 * Integer.BYTES);
+    }
+}
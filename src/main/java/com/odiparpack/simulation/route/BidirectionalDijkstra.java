@@ -0,0 +1,220 @@
+package com.odiparpack.simulation.route;
+
+import com.odiparpack.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Dijkstra bidireccional punto a punto sobre el grafo CSR, para consultas sueltas que no amortizan la
+ * preparación de A*.
+ * <p>
+ * Un frente avanza desde el origen y otro desde el destino; como los tramos son bidireccionales, el frente
+ * inverso recorre los mismos arcos. Al relajar un arco hacia un nodo ya alcanzado por el otro frente se actualiza
+ * la mejor longitud conocida μ, y la búsqueda termina cuando la suma de los mínimos de ambos heaps es &ge; μ.
+ * En consultas largas y con más de un procesador, cada frente corre en su propio hilo con el mismo criterio de
+ * parada; las distancias se comparten con AtomicLongArray para que cada frente vea las del otro.
+ * <p>
+ * Los pesos se leen de la matriz de tiempos actual, así que los tramos bloqueados (Long.MAX_VALUE) se ignoran.
+ * Una instancia no es segura para consultas concurrentes.
+ */
+public class BidirectionalDijkstra {
+    /** Distancia en línea recta a partir de la cual una consulta se considera larga. */
+    private static final double PARALLEL_MIN_KM = 600.0;
+    private static final boolean MULTI_CORE = Runtime.getRuntime().availableProcessors() > 1;
+
+    private final RoadGraph graph;
+    private final long[][] timeMatrix;
+    private final int n;
+
+    // Mejor camino encontrado: longitud y arco de encuentro; offer los reemplaza juntos con el monitor
+    private volatile long best;
+    private volatile Meeting meeting;
+    private int lastSettledCount;
+
+    /**
+     * @param graph      Grafo de carreteras en formato CSR.
+     * @param timeMatrix Matriz de tiempos actual, con Long.MAX_VALUE en los tramos bloqueados.
+     */
+    public BidirectionalDijkstra(RoadGraph graph, long[][] timeMatrix) {
+        this.graph = graph;
+        this.timeMatrix = timeMatrix;
+        this.n = graph.nodeCount();
+    }
+
+    /**
+     * Calcula el camino mínimo; usa dos hilos si la consulta es larga y hay más de un procesador.
+     *
+     * @return Secuencia de nodos del camino (incluye extremos) o null si end no es alcanzable.
+     */
+    public int[] shortestPath(int start, int end) {
+        boolean parallel = MULTI_CORE && Utils.calculateDistance(graph.latitude(start), graph.longitude(start),
+                graph.latitude(end), graph.longitude(end)) >= PARALLEL_MIN_KM;
+        return shortestPath(start, end, parallel);
+    }
+
+    /**
+     * Calcula el camino mínimo con ambos frentes en el hilo actual (alternando el de menor clave) o con un
+     * hilo por frente.
+     *
+     * @return Secuencia de nodos del camino (incluye extremos) o null si end no es alcanzable.
+     */
+    public int[] shortestPath(int start, int end, boolean parallel) {
+        lastSettledCount = 0;
+        if (start == end) {
+            return new int[]{start};
+        }
+        best = Long.MAX_VALUE;
+        meeting = null;
+        Frontier forward = new Frontier(start, true);
+        Frontier backward = new Frontier(end, false);
+
+        if (parallel) {
+            CompletableFuture<Void> backwardTask = CompletableFuture.runAsync(() -> backward.run(forward));
+            forward.run(backward);
+            // join() ordena todas las escrituras del frente inverso (pred, meeting) antes de reconstruir el camino
+            backwardTask.join();
+        } else {
+            while (!forward.shouldStop(backward) && !backward.shouldStop(forward)) {
+                if (forward.heap.peekKey() <= backward.heap.peekKey()) {
+                    forward.step(backward);
+                } else {
+                    backward.step(forward);
+                }
+            }
+        }
+
+        lastSettledCount = forward.settled + backward.settled;
+        Meeting found = meeting;
+        if (found == null) {
+            return null;
+        }
+        return buildPath(forward, backward, found);
+    }
+
+    /**
+     * @return Longitud del último camino encontrado, o Long.MAX_VALUE si no hubo camino.
+     */
+    public long getLastDistance() {
+        return best;
+    }
+
+    /**
+     * @return Nodos asentados entre ambos frentes en la última consulta.
+     */
+    public int getLastSettledCount() {
+        return lastSettledCount;
+    }
+
+    private synchronized void offer(long length, int from, int to) {
+        if (length < best) {
+            meeting = new Meeting(from, to);
+            best = length;
+        }
+    }
+
+    /**
+     * Reconstruye el camino; solo se llama cuando ambos frentes terminaron, así que los pred ya no cambian.
+     */
+    private int[] buildPath(Frontier forward, Frontier backward, Meeting found) {
+        List<Integer> path = new ArrayList<>();
+        for (int v = found.from; v != -1; v = forward.pred[v]) {
+            path.add(v);
+        }
+        Collections.reverse(path);
+        for (int v = found.to; v != -1; v = backward.pred[v]) {
+            path.add(v);
+        }
+        return path.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Arco de encuentro del mejor camino: from en el frente directo y to en el inverso.
+     */
+    private static final class Meeting {
+        final int from;
+        final int to;
+
+        Meeting(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Un frente de búsqueda. El frente inverso guarda en dist la distancia hasta el destino.
+     */
+    private final class Frontier {
+        final boolean isForward;
+        final AtomicLongArray dist;
+        final int[] pred;
+        final IndexedMinHeap heap;
+        volatile long top;  // clave mínima publicada tras terminar de recorrer el último nodo asentado
+        int settled;
+
+        Frontier(int source, boolean isForward) {
+            this.isForward = isForward;
+            this.dist = new AtomicLongArray(n);
+            this.pred = new int[n];
+            this.heap = new IndexedMinHeap(n);
+            for (int i = 0; i < n; i++) {
+                dist.set(i, Long.MAX_VALUE);
+                pred[i] = -1;
+            }
+            dist.set(source, 0);
+            heap.insertOrDecrease(source, 0);
+            top = 0;
+        }
+
+        /**
+         * Ningún camino no visto puede mejorar μ: su longitud es al menos la suma de los mínimos de ambos heaps.
+         * Si un frente agotó su heap, todos los arcos hacia el otro extremo ya se revisaron y μ es definitivo.
+         */
+        boolean shouldStop(Frontier other) {
+            if (heap.isEmpty()) {
+                return true;
+            }
+            long current = best;
+            long own = heap.peekKey();
+            long others = other.top;
+            return others == Long.MAX_VALUE || own >= current || own + others >= current;
+        }
+
+        void run(Frontier other) {
+            while (!shouldStop(other)) {
+                step(other);
+            }
+            top = Long.MAX_VALUE;
+        }
+
+        void step(Frontier other) {
+            int u = heap.poll();
+            settled++;
+            long du = dist.get(u);
+            for (int arc = graph.firstArc(u), end = graph.endArc(u); arc < end; arc++) {
+                int v = graph.target(arc);
+                long w = isForward ? timeMatrix[u][v] : timeMatrix[v][u];
+                if (w == Long.MAX_VALUE) continue; // tramo bloqueado
+                long candidate = du + w;
+                if (candidate < dist.get(v)) {
+                    dist.set(v, candidate);
+                    pred[v] = u;
+                    heap.insertOrDecrease(v, candidate);
+                }
+                long otherDist = other.dist.get(v);
+                if (otherDist != Long.MAX_VALUE) {
+                    if (isForward) {
+                        offer(candidate + otherDist, u, v);
+                    } else {
+                        offer(candidate + otherDist, v, u);
+                    }
+                }
+            }
+            // Se publica después de recorrer u, para que el otro frente no se detenga antes de estas revisiones
+            top = heap.isEmpty() ? Long.MAX_VALUE : heap.peekKey();
+        }
+    }
+}
@@ -0,0 +1,749 @@
+package com.odiparpack.simulation.route;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Índice de Contraction Hierarchies sobre la red de tramos cargada por DataLoader.loadEdges.
+ * <p>
+ * El preprocesamiento contrae nodos por rondas: en cada ronda se elige en paralelo un conjunto independiente
+ * de nodos con prioridad mínima local (diferencia de aristas + vecinos ya contraídos), se calculan sus atajos
+ * en paralelo y se actualizan las prioridades de sus vecinos. Las consultas recorren solo arcos ascendentes,
+ * por lo que exploran una fracción pequeña del grafo aunque este tenga decenas de miles de nodos.
+ * <p>
+ * El índice describe el grafo sin bloqueos y es serializable, de modo que se guarda en disco junto con una
+ * huella del grafo y se reutiliza en los siguientes arranques.
+ */
+public class ContractionHierarchy implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = Logger.getLogger(ContractionHierarchy.class.getName());
+
+    public static final long UNREACHABLE = Long.MAX_VALUE;
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int PRIORITY_SETTLE_LIMIT = 20; // Búsquedas más cortas al solo estimar la prioridad
+
+    private final int n;
+    private final long fingerprint;
+    private final int[] rank;
+
+    // Grafo ascendente hacia adelante (CSR): para u, arcos u→x con rank[x] > rank[u]
+    private final int[] fwdOffset;
+    private final int[] fwdTarget;
+    private final long[] fwdWeight;
+    private final int[] fwdMiddle; // nodo intermedio del atajo, -1 si es un tramo original
+
+    // Grafo ascendente hacia atrás (CSR): para x, arcos y→x con rank[y] > rank[x]
+    private final int[] bwdOffset;
+    private final int[] bwdSource;
+    private final long[] bwdWeight;
+    private final int[] bwdMiddle;
+
+    private transient volatile ThreadLocal<QueryState> queryStates;
+
+    private ContractionHierarchy(int n, long fingerprint, int[] rank,
+                                 int[] fwdOffset, int[] fwdTarget, long[] fwdWeight, int[] fwdMiddle,
+                                 int[] bwdOffset, int[] bwdSource, long[] bwdWeight, int[] bwdMiddle) {
+        this.n = n;
+        this.fingerprint = fingerprint;
+        this.rank = rank;
+        this.fwdOffset = fwdOffset;
+        this.fwdTarget = fwdTarget;
+        this.fwdWeight = fwdWeight;
+        this.fwdMiddle = fwdMiddle;
+        this.bwdOffset = bwdOffset;
+        this.bwdSource = bwdSource;
+        this.bwdWeight = bwdWeight;
+        this.bwdMiddle = bwdMiddle;
+    }
+
+    /**
+     * Carga el índice desde disco si corresponde al grafo actual; si no existe o está desactualizado,
+     * lo construye y lo guarda.
+     *
+     * @param file      Archivo del índice serializado.
+     * @param roadGraph Grafo de carreteras en formato CSR.
+     * @return Índice listo para consultas.
+     */
+    public static ContractionHierarchy loadOrBuild(Path file, RoadGraph roadGraph) {
+        GraphArrays graph = GraphArrays.fromRoadGraph(roadGraph);
+
+        if (Files.exists(file)) {
+            try {
+                ContractionHierarchy loaded = load(file);
+                if (loaded.n == graph.n && loaded.fingerprint == graph.fingerprint) {
+                    logger.info("Índice de Contraction Hierarchies cargado desde " + file);
+                    return loaded;
+                }
+                logger.info("El índice de Contraction Hierarchies en " + file + " no corresponde al grafo actual. Se reconstruye.");
+            } catch (IOException | ClassNotFoundException e) {
+                logger.log(Level.WARNING, "No se pudo leer el índice de Contraction Hierarchies. Se reconstruye.", e);
+            }
+        }
+
+        ContractionHierarchy ch = build(graph);
+        try {
+            ch.save(file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "No se pudo guardar el índice de Contraction Hierarchies en " + file, e);
+        }
+        return ch;
+    }
+
+    public static ContractionHierarchy load(Path file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return (ContractionHierarchy) in.readObject();
+        }
+    }
+
+    public void save(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeObject(this);
+        }
+        logger.info("Índice de Contraction Hierarchies guardado en " + file);
+    }
+
+    static ContractionHierarchy build(GraphArrays graph) {
+        long startNanos = System.nanoTime();
+        ContractionHierarchy ch = new Builder(graph).contract();
+        logger.info(String.format("Contraction Hierarchies construido: %d nodos, %d arcos ascendentes en %d ms",
+                ch.n, ch.fwdTarget.length + ch.bwdSource.length, (System.nanoTime() - startNanos) / 1_000_000));
+        return ch;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /**
+     * @return Tiempo mínimo en minutos de from a to en el grafo sin bloqueos, o UNREACHABLE.
+     */
+    public long distance(int from, int to) {
+        if (from == to) return 0;
+        QueryState state = queryState();
+        try {
+            return runBidirectional(from, to, state);
+        } finally {
+            state.reset();
+        }
+    }
+
+    /**
+     * Calcula el camino mínimo en el grafo sin bloqueos, desempaquetando los atajos.
+     *
+     * @return Secuencia de nodos (incluye extremos) o null si to no es alcanzable desde from.
+     */
+    public int[] shortestPath(int from, int to) {
+        if (from == to) return new int[]{from};
+        QueryState state = queryState();
+        try {
+            long best = runBidirectional(from, to, state);
+            if (best == UNREACHABLE) {
+                return null;
+            }
+            int meet = state.meet;
+
+            // Tramo origen → punto de encuentro (se recorre al revés y luego se invierte)
+            IntList upward = new IntList();
+            for (int v = meet; v != from; v = state.fwdPredNode[v]) {
+                upward.add(state.fwdPredArc[v]);
+            }
+            IntList path = new IntList();
+            path.add(from);
+            int current = from;
+            for (int i = upward.size - 1; i >= 0; i--) {
+                int arc = upward.data[i];
+                unpack(current, fwdTarget[arc], fwdMiddle[arc], path);
+                current = fwdTarget[arc];
+            }
+            // Tramo punto de encuentro → destino
+            for (int v = meet; v != to; v = state.bwdPredNode[v]) {
+                int arc = state.bwdPredArc[v];
+                unpack(v, state.bwdPredNode[v], bwdMiddle[arc], path);
+            }
+            return path.toArray();
+        } finally {
+            state.reset();
+        }
+    }
+
+    /**
+     * Tiempos mínimos desde un origen a varios destinos.
+     */
+    public long[] oneToMany(int source, int[] targets) {
+        return manyToMany(new int[]{source}, targets)[0];
+    }
+
+    /**
+     * Matriz de tiempos mínimos entre varios orígenes y destinos usando buckets: una búsqueda ascendente
+     * hacia atrás por destino deja entradas (destino, distancia) en cada nodo alcanzado, y una búsqueda
+     * ascendente hacia adelante por origen combina esas entradas.
+     *
+     * @return Matriz result[i][j] con el tiempo de sources[i] a targets[j], o UNREACHABLE.
+     */
+    public long[][] manyToMany(int[] sources, int[] targets) {
+        // Búsquedas hacia atrás en paralelo, una por destino
+        List<long[]> backwardSpaces = IntStream.range(0, targets.length).parallel()
+                .mapToObj(j -> upwardSearchSpace(targets[j], false))
+                .collect(Collectors.toList());
+
+        // Construir buckets por nodo (CSR): entradas (índice de destino, distancia)
+        int[] bucketOffset = new int[n + 1];
+        for (long[] space : backwardSpaces) {
+            for (int k = 0; k < space.length; k += 2) {
+                bucketOffset[(int) space[k] + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            bucketOffset[v + 1] += bucketOffset[v];
+        }
+        int[] fill = Arrays.copyOf(bucketOffset, n);
+        int[] bucketTarget = new int[bucketOffset[n]];
+        long[] bucketDist = new long[bucketOffset[n]];
+        for (int j = 0; j < backwardSpaces.size(); j++) {
+            long[] space = backwardSpaces.get(j);
+            for (int k = 0; k < space.length; k += 2) {
+                int pos = fill[(int) space[k]]++;
+                bucketTarget[pos] = j;
+                bucketDist[pos] = space[k + 1];
+            }
+        }
+
+        // Búsquedas hacia adelante en paralelo, una por origen
+        long[][] result = new long[sources.length][];
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            long[] row = new long[targets.length];
+            Arrays.fill(row, UNREACHABLE);
+            long[] space = upwardSearchSpace(sources[i], true);
+            for (int k = 0; k < space.length; k += 2) {
+                int v = (int) space[k];
+                long d = space[k + 1];
+                for (int b = bucketOffset[v]; b < bucketOffset[v + 1]; b++) {
+                    long candidate = d + bucketDist[b];
+                    if (candidate < row[bucketTarget[b]]) {
+                        row[bucketTarget[b]] = candidate;
+                    }
+                }
+            }
+            result[i] = row;
+        });
+        return result;
+    }
+
+    /**
+     * Búsqueda ascendente completa desde un nodo.
+     *
+     * @return Pares (nodo, distancia) aplanados en un arreglo.
+     */
+    private long[] upwardSearchSpace(int start, boolean forward) {
+        QueryState state = queryState();
+        try {
+            long[] dist = forward ? state.fwdDist : state.bwdDist;
+            IndexedMinHeap heap = forward ? state.fwdHeap : state.bwdHeap;
+            int[] offset = forward ? fwdOffset : bwdOffset;
+            int[] other = forward ? fwdTarget : bwdSource;
+            long[] weight = forward ? fwdWeight : bwdWeight;
+
+            LongList space = new LongList();
+            dist[start] = 0;
+            state.touch(start);
+            heap.insertOrDecrease(start, 0);
+            while (!heap.isEmpty()) {
+                int u = heap.poll();
+                long du = dist[u];
+                space.add(u);
+                space.add(du);
+                for (int a = offset[u]; a < offset[u + 1]; a++) {
+                    int v = other[a];
+                    long candidate = du + weight[a];
+                    if (candidate < dist[v]) {
+                        if (dist[v] == UNREACHABLE) state.touch(v);
+                        dist[v] = candidate;
+                        heap.insertOrDecrease(v, candidate);
+                    }
+                }
+            }
+            return space.toArray();
+        } finally {
+            state.reset();
+        }
+    }
+
+    private long runBidirectional(int from, int to, QueryState state) {
+        state.fwdDist[from] = 0;
+        state.bwdDist[to] = 0;
+        state.touch(from);
+        state.touch(to);
+        state.fwdHeap.insertOrDecrease(from, 0);
+        state.bwdHeap.insertOrDecrease(to, 0);
+
+        long best = UNREACHABLE;
+        state.meet = -1;
+        while (!state.fwdHeap.isEmpty() || !state.bwdHeap.isEmpty()) {
+            long minFwd = state.fwdHeap.isEmpty() ? UNREACHABLE : state.fwdHeap.peekKey();
+            long minBwd = state.bwdHeap.isEmpty() ? UNREACHABLE : state.bwdHeap.peekKey();
+            if (Math.min(minFwd, minBwd) >= best) break;
+
+            boolean forward = minFwd <= minBwd;
+            IndexedMinHeap heap = forward ? state.fwdHeap : state.bwdHeap;
+            long[] dist = forward ? state.fwdDist : state.bwdDist;
+            long[] otherDist = forward ? state.bwdDist : state.fwdDist;
+            int[] predNode = forward ? state.fwdPredNode : state.bwdPredNode;
+            int[] predArc = forward ? state.fwdPredArc : state.bwdPredArc;
+            int[] offset = forward ? fwdOffset : bwdOffset;
+            int[] other = forward ? fwdTarget : bwdSource;
+            long[] weight = forward ? fwdWeight : bwdWeight;
+
+            int u = heap.poll();
+            long du = dist[u];
+            if (otherDist[u] != UNREACHABLE && du + otherDist[u] < best) {
+                best = du + otherDist[u];
+                state.meet = u;
+            }
+            for (int a = offset[u]; a < offset[u + 1]; a++) {
+                int v = other[a];
+                long candidate = du + weight[a];
+                if (candidate < dist[v]) {
+                    if (state.fwdDist[v] == UNREACHABLE && state.bwdDist[v] == UNREACHABLE) state.touch(v);
+                    dist[v] = candidate;
+                    predNode[v] = u;
+                    predArc[v] = a;
+                    heap.insertOrDecrease(v, candidate);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Agrega a path los nodos del arco a→b desempaquetado (sin incluir a).
+     */
+    private void unpack(int a, int b, int middle, IntList path) {
+        if (middle < 0) {
+            path.add(b);
+            return;
+        }
+        // a→middle es descendente (se guarda en el grafo hacia atrás de middle); middle→b es ascendente
+        int down = findArc(bwdOffset, bwdSource, middle, a);
+        unpack(a, middle, bwdMiddle[down], path);
+        int up = findArc(fwdOffset, fwdTarget, middle, b);
+        unpack(middle, b, fwdMiddle[up], path);
+    }
+
+    private static int findArc(int[] offset, int[] other, int node, int neighbor) {
+        for (int a = offset[node]; a < offset[node + 1]; a++) {
+            if (other[a] == neighbor) return a;
+        }
+        throw new IllegalStateException("Arco no encontrado al desempaquetar atajo: " + node + " / " + neighbor);
+    }
+
+    private QueryState queryState() {
+        ThreadLocal<QueryState> states = queryStates;
+        if (states == null) {
+            synchronized (this) {
+                if (queryStates == null) {
+                    queryStates = ThreadLocal.withInitial(() -> new QueryState(n));
+                }
+                states = queryStates;
+            }
+        }
+        return states.get();
+    }
+
+    /**
+     * Estado reutilizable por hilo para las consultas; solo se reinician las posiciones tocadas.
+     */
+    private static final class QueryState {
+        final long[] fwdDist;
+        final long[] bwdDist;
+        final int[] fwdPredNode;
+        final int[] fwdPredArc;
+        final int[] bwdPredNode;
+        final int[] bwdPredArc;
+        final IndexedMinHeap fwdHeap;
+        final IndexedMinHeap bwdHeap;
+        final IntList touched = new IntList();
+        int meet;
+
+        QueryState(int n) {
+            fwdDist = new long[n];
+            bwdDist = new long[n];
+            fwdPredNode = new int[n];
+            fwdPredArc = new int[n];
+            bwdPredNode = new int[n];
+            bwdPredArc = new int[n];
+            fwdHeap = new IndexedMinHeap(n);
+            bwdHeap = new IndexedMinHeap(n);
+            Arrays.fill(fwdDist, UNREACHABLE);
+            Arrays.fill(bwdDist, UNREACHABLE);
+        }
+
+        void touch(int v) {
+            touched.add(v);
+        }
+
+        void reset() {
+            for (int i = 0; i < touched.size; i++) {
+                int v = touched.data[i];
+                fwdDist[v] = UNREACHABLE;
+                bwdDist[v] = UNREACHABLE;
+            }
+            touched.size = 0;
+            fwdHeap.clear();
+            bwdHeap.clear();
+        }
+    }
+
+    /**
+     * Grafo de entrada en arreglos primitivos, con una huella que identifica ubicaciones y tramos.
+     */
+    static final class GraphArrays {
+        final int n;
+        final int[] from;
+        final int[] to;
+        final long[] weight;
+        final long fingerprint;
+
+        GraphArrays(int n, int[] from, int[] to, long[] weight, long fingerprint) {
+            this.n = n;
+            this.from = from;
+            this.to = to;
+            this.weight = weight;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * Copia los arcos del grafo CSR, que ya tiene minutos enteros y tramos bidireccionales.
+         */
+        static GraphArrays fromRoadGraph(RoadGraph roadGraph) {
+            int arcs = roadGraph.arcCount();
+            int[] from = new int[arcs];
+            int[] to = new int[arcs];
+            long[] weight = new long[arcs];
+            for (int u = 0; u < roadGraph.nodeCount(); u++) {
+                for (int arc = roadGraph.firstArc(u), end = roadGraph.endArc(u); arc < end; arc++) {
+                    from[arc] = u;
+                    to[arc] = roadGraph.target(arc);
+                    weight[arc] = roadGraph.minutes(arc);
+                }
+            }
+            return new GraphArrays(roadGraph.nodeCount(), from, to, weight, roadGraph.getFingerprint());
+        }
+    }
+
+    /**
+     * Estado mutable del preprocesamiento.
+     */
+    private static final class Builder {
+        private final GraphArrays graph;
+        private final int n;
+        private final List<List<Arc>> out;
+        private final List<List<Arc>> in;
+        private final boolean[] contracted;
+        private final boolean[] inRound;
+        private final int[] priority;
+        private final int[] contractedNeighbors;
+        private final int[] rank;
+        private final ThreadLocal<WitnessSearch> witnessSearches;
+
+        Builder(GraphArrays graph) {
+            this.graph = graph;
+            this.n = graph.n;
+            this.out = new ArrayList<>(n);
+            this.in = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                out.add(new ArrayList<>());
+                in.add(new ArrayList<>());
+            }
+            this.contracted = new boolean[n];
+            this.inRound = new boolean[n];
+            this.priority = new int[n];
+            this.contractedNeighbors = new int[n];
+            this.rank = new int[n];
+            this.witnessSearches = ThreadLocal.withInitial(() -> new WitnessSearch(n));
+
+            for (int i = 0; i < graph.from.length; i++) {
+                if (graph.from[i] != graph.to[i]) {
+                    addOrImprove(graph.from[i], graph.to[i], graph.weight[i], -1);
+                }
+            }
+        }
+
+        ContractionHierarchy contract() {
+            IntStream.range(0, n).parallel().forEach(v -> priority[v] = computePriority(v));
+
+            List<Integer> remaining = IntStream.range(0, n).boxed().collect(Collectors.toList());
+            int nextRank = 0;
+            while (!remaining.isEmpty()) {
+                List<Integer> round = remaining.parallelStream()
+                        .filter(this::isLocalMinimum)
+                        .collect(Collectors.toList());
+                for (int v : round) inRound[v] = true;
+
+                // Los atajos de la ronda se calculan en paralelo sobre el grafo sin modificar
+                List<List<Arc>> shortcuts = round.parallelStream()
+                        .map(v -> findShortcuts(v, WITNESS_SETTLE_LIMIT))
+                        .collect(Collectors.toList());
+
+                Set<Integer> neighbors = new HashSet<>();
+                for (int i = 0; i < round.size(); i++) {
+                    int v = round.get(i);
+                    contracted[v] = true;
+                    inRound[v] = false;
+                    rank[v] = nextRank++;
+                    for (Arc shortcut : shortcuts.get(i)) {
+                        addOrImprove(shortcut.from, shortcut.to, shortcut.weight, shortcut.middle);
+                    }
+                    for (Arc arc : out.get(v)) {
+                        if (!contracted[arc.to]) {
+                            contractedNeighbors[arc.to]++;
+                            neighbors.add(arc.to);
+                        }
+                    }
+                    for (Arc arc : in.get(v)) {
+                        if (!contracted[arc.from]) {
+                            contractedNeighbors[arc.from]++;
+                            neighbors.add(arc.from);
+                        }
+                    }
+                }
+                neighbors.parallelStream().forEach(u -> priority[u] = computePriority(u));
+                remaining.removeIf(v -> contracted[v]);
+            }
+            return toIndex();
+        }
+
+        private boolean isLocalMinimum(int v) {
+            for (Arc arc : out.get(v)) {
+                if (!contracted[arc.to] && precedes(arc.to, v)) return false;
+            }
+            for (Arc arc : in.get(v)) {
+                if (!contracted[arc.from] && precedes(arc.from, v)) return false;
+            }
+            return true;
+        }
+
+        private boolean precedes(int a, int b) {
+            return priority[a] < priority[b] || (priority[a] == priority[b] && a < b);
+        }
+
+        private int computePriority(int v) {
+            int removed = 0;
+            for (Arc arc : out.get(v)) if (!contracted[arc.to]) removed++;
+            for (Arc arc : in.get(v)) if (!contracted[arc.from]) removed++;
+            return findShortcuts(v, PRIORITY_SETTLE_LIMIT).size() - removed + contractedNeighbors[v];
+        }
+
+        /**
+         * Atajos necesarios al contraer v: para cada par u→v→w se busca un camino testigo que no pase por v
+         * ni por otros nodos de la ronda actual; si no existe uno tan corto, se requiere el atajo u→w.
+         */
+        private List<Arc> findShortcuts(int v, int settleLimit) {
+            List<Arc> shortcuts = new ArrayList<>();
+            WitnessSearch search = witnessSearches.get();
+            for (Arc inArc : in.get(v)) {
+                int u = inArc.from;
+                if (contracted[u]) continue;
+                long maxVia = -1;
+                for (Arc outArc : out.get(v)) {
+                    if (!contracted[outArc.to] && outArc.to != u) {
+                        maxVia = Math.max(maxVia, inArc.weight + outArc.weight);
+                    }
+                }
+                if (maxVia < 0) continue;
+                for (Arc outArc : out.get(v)) {
+                    if (!contracted[outArc.to] && outArc.to != u) search.addTarget(outArc.to);
+                }
+                search.run(u, v, maxVia, settleLimit);
+                for (Arc outArc : out.get(v)) {
+                    int w = outArc.to;
+                    if (contracted[w] || w == u) continue;
+                    long via = inArc.weight + outArc.weight;
+                    if (search.distance(w) > via) {
+                        shortcuts.add(new Arc(u, w, via, v));
+                    }
+                }
+                search.reset();
+            }
+            return shortcuts;
+        }
+
+        private void addOrImprove(int from, int to, long weight, int middle) {
+            for (Arc arc : out.get(from)) {
+                if (arc.to == to) {
+                    if (weight < arc.weight) {
+                        arc.weight = weight;
+                        arc.middle = middle;
+                    }
+                    return;
+                }
+            }
+            Arc arc = new Arc(from, to, weight, middle);
+            out.get(from).add(arc);
+            in.get(to).add(arc);
+        }
+
+        private ContractionHierarchy toIndex() {
+            int[] fwdOffset = new int[n + 1];
+            int[] bwdOffset = new int[n + 1];
+            for (int u = 0; u < n; u++) {
+                for (Arc arc : out.get(u)) {
+                    if (rank[arc.to] > rank[u]) fwdOffset[u + 1]++;
+                    else bwdOffset[arc.to + 1]++;
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                fwdOffset[v + 1] += fwdOffset[v];
+                bwdOffset[v + 1] += bwdOffset[v];
+            }
+            int[] fwdTarget = new int[fwdOffset[n]];
+            long[] fwdWeight = new long[fwdOffset[n]];
+            int[] fwdMiddle = new int[fwdOffset[n]];
+            int[] bwdSource = new int[bwdOffset[n]];
+            long[] bwdWeight = new long[bwdOffset[n]];
+            int[] bwdMiddle = new int[bwdOffset[n]];
+            int[] fwdFill = Arrays.copyOf(fwdOffset, n);
+            int[] bwdFill = Arrays.copyOf(bwdOffset, n);
+            for (int u = 0; u < n; u++) {
+                for (Arc arc : out.get(u)) {
+                    if (rank[arc.to] > rank[u]) {
+                        int pos = fwdFill[u]++;
+                        fwdTarget[pos] = arc.to;
+                        fwdWeight[pos] = arc.weight;
+                        fwdMiddle[pos] = arc.middle;
+                    } else {
+                        int pos = bwdFill[arc.to]++;
+                        bwdSource[pos] = u;
+                        bwdWeight[pos] = arc.weight;
+                        bwdMiddle[pos] = arc.middle;
+                    }
+                }
+            }
+            return new ContractionHierarchy(n, graph.fingerprint, rank,
+                    fwdOffset, fwdTarget, fwdWeight, fwdMiddle,
+                    bwdOffset, bwdSource, bwdWeight, bwdMiddle);
+        }
+
+        /**
+         * Dijkstra local y acotado para buscar caminos testigo.
+         */
+        private final class WitnessSearch {
+            private final long[] dist;
+            private final IndexedMinHeap heap;
+            private final IntList touched = new IntList();
+            private final IntList targets = new IntList();
+            private final boolean[] isTarget;
+            private int pendingTargets;
+
+            WitnessSearch(int n) {
+                dist = new long[n];
+                Arrays.fill(dist, UNREACHABLE);
+                heap = new IndexedMinHeap(n);
+                isTarget = new boolean[n];
+            }
+
+            void addTarget(int v) {
+                if (!isTarget[v]) {
+                    isTarget[v] = true;
+                    targets.add(v);
+                    pendingTargets++;
+                }
+            }
+
+            /**
+             * Se detiene al superar el límite de distancia o de nodos asentados, o cuando ya se asentaron
+             * todos los destinos registrados con addTarget.
+             */
+            void run(int source, int excluded, long limit, int settleLimit) {
+                dist[source] = 0;
+                touched.add(source);
+                heap.insertOrDecrease(source, 0);
+                int settled = 0;
+                while (!heap.isEmpty() && settled < settleLimit && pendingTargets > 0) {
+                    if (heap.peekKey() > limit) break;
+                    int u = heap.poll();
+                    settled++;
+                    if (isTarget[u]) pendingTargets--;
+                    long du = dist[u];
+                    for (Arc arc : out.get(u)) {
+                        int w = arc.to;
+                        if (w == excluded || contracted[w] || inRound[w]) continue;
+                        long candidate = du + arc.weight;
+                        if (candidate < dist[w]) {
+                            if (dist[w] == UNREACHABLE) touched.add(w);
+                            dist[w] = candidate;
+                            heap.insertOrDecrease(w, candidate);
+                        }
+                    }
+                }
+            }
+
+            long distance(int v) {
+                return dist[v];
+            }
+
+            void reset() {
+                for (int i = 0; i < touched.size; i++) {
+                    dist[touched.data[i]] = UNREACHABLE;
+                }
+                touched.size = 0;
+                for (int i = 0; i < targets.size; i++) {
+                    isTarget[targets.data[i]] = false;
+                }
+                targets.size = 0;
+                pendingTargets = 0;
+                heap.clear();
+            }
+        }
+    }
+
+    private static final class Arc {
+        final int from;
+        final int to;
+        long weight;
+        int middle;
+
+        Arc(int from, int to, long weight, int middle) {
+            this.from = from;
+            this.to = to;
+            this.weight = weight;
+            this.middle = middle;
+        }
+    }
+
+    private static final class IntList {
+        int[] data = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    private static final class LongList {
+        long[] data = new long[16];
+        int size;
+
+        void add(long value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.odiparpack.simulation.route;
+
+import com.odiparpack.models.Location;
+import com.odiparpack.services.LocationService;
+import com.odiparpack.utils.Utils;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Cota inferior del tiempo de viaje entre dos nodos: distancia Haversine dividida entre la velocidad máxima.
+ * <p>
+ * La velocidad nominal máxima es 70 km/h (Costa - Costa en Utils.getAverageSpeed), pero la matriz trunca los
+ * tiempos a minutos enteros y algunos tramos quedan algo más "rápidos". Por eso la velocidad se calibra con
+ * los propios tramos de la matriz: así la heurística es consistente (h(u) &le; w(u, v) + h(v)) y A* no
+ * necesita reabrir nodos.
+ */
+final class GeoHeuristic {
+    private static final Logger logger = Logger.getLogger(GeoHeuristic.class.getName());
+    private static final double MAX_SPEED_KMH = 70.0;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double kmPerMinute;
+
+    private GeoHeuristic(double[] latitudes, double[] longitudes, double kmPerMinute) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.kmPerMinute = kmPerMinute;
+    }
+
+    /**
+     * Crea la heurística para los nodos de la matriz.
+     *
+     * @param timeMatrix      Matriz de tiempos (minutos) con Long.MAX_VALUE en los tramos inexistentes.
+     * @param locationUbigeos Ubigeos en el orden de los índices de la matriz.
+     * @return Heurística, o null si falta la ubicación de algún nodo.
+     */
+    static GeoHeuristic create(long[][] timeMatrix, List<String> locationUbigeos) {
+        int n = locationUbigeos.size();
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        LocationService locationService = LocationService.getInstance();
+        for (int i = 0; i < n; i++) {
+            Location location = locationService.getLocation(locationUbigeos.get(i));
+            if (location == null) {
+                logger.warning("Ubicación sin coordenadas para A*: " + locationUbigeos.get(i));
+                return null;
+            }
+            latitudes[i] = location.getLatitude();
+            longitudes[i] = location.getLongitude();
+        }
+
+        double kmPerMinute = MAX_SPEED_KMH / 60.0;
+        for (int u = 0; u < n; u++) {
+            long[] row = timeMatrix[u];
+            for (int v = 0; v < n; v++) {
+                long minutes = row[v];
+                if (v == u || minutes == Long.MAX_VALUE) continue;
+                double km = Utils.calculateDistance(latitudes[u], longitudes[u], latitudes[v], longitudes[v]);
+                if (minutes == 0) {
+                    if (km > 0) return null; // Un tramo de costo cero impide acotar el tiempo por la distancia
+                    continue;
+                }
+                kmPerMinute = Math.max(kmPerMinute, km / minutes);
+            }
+        }
+        // Margen mínimo para que el redondeo de punto flotante no rompa la consistencia
+        return new GeoHeuristic(latitudes, longitudes, kmPerMinute * (1 + 1e-9));
+    }
+
+    /**
+     * @return Minutos mínimos estimados de from a to (nunca sobreestima).
+     */
+    long estimate(int from, int to) {
+        double km = Utils.calculateDistance(latitudes[from], longitudes[from], latitudes[to], longitudes[to]);
+        return (long) (km / kmPerMinute);
+    }
+}
@@ -0,0 +1,101 @@
+package com.odiparpack.simulation.route;
+
+import java.util.Arrays;
+
+/**
+ * Heap binario de mínimos indexado por nodo, con soporte de decrease-key.
+ * Trabaja solo con arreglos primitivos para no generar basura en cada consulta.
+ */
+class IndexedMinHeap {
+    private final int[] heap;      // posición -> nodo
+    private final int[] position;  // nodo -> posición en el heap (-1 si no está)
+    private final long[] keys;     // nodo -> clave actual
+    private int size;
+
+    IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.keys = new long[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int node) {
+        return position[node] != -1;
+    }
+
+    long peekKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Inserta el nodo o reduce su clave si ya está en el heap.
+     */
+    void insertOrDecrease(int node, long key) {
+        if (position[node] == -1) {
+            heap[size] = node;
+            position[node] = size;
+            keys[node] = key;
+            siftUp(size++);
+        } else if (key < keys[node]) {
+            keys[node] = key;
+            siftUp(position[node]);
+        }
+    }
+
+    int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int node = heap[i];
+        long key = keys[node];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int parentNode = heap[parent];
+            if (keys[parentNode] <= key) break;
+            heap[i] = parentNode;
+            position[parentNode] = i;
+            i = parent;
+        }
+        heap[i] = node;
+        position[node] = i;
+    }
+
+    private void siftDown(int i) {
+        int node = heap[i];
+        long key = keys[node];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            if (key <= keys[heap[child]]) break;
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = node;
+        position[node] = i;
+    }
+}
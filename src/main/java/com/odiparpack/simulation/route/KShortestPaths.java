@@ -0,0 +1,158 @@
+package com.odiparpack.simulation.route;
+
+import java.util.*;
+
+/**
+ * Los k caminos simples más cortos entre dos nodos (algoritmo de Yen) sobre el grafo CSR sin bloqueos.
+ * <p>
+ * Cada camino nuevo se obtiene desviando uno de los anteriores en alguno de sus nodos (nodo de desvío): se
+ * conserva el prefijo hasta ese nodo, se quitan los arcos que ya usan los caminos aceptados con el mismo prefijo
+ * y los nodos del prefijo, y se busca con Dijkstra el resto del camino. Los caminos salen ordenados por
+ * duración, de modo que, ante un bloqueo, el primero que no lo atraviese es el más corto posible si está entre
+ * los k calculados.
+ */
+public final class KShortestPaths {
+    private final RoadGraph graph;
+    private final long[] dist;
+    private final int[] pred;
+    private final IndexedMinHeap heap;
+    private final boolean[] removedNode;
+    private final boolean[] removedArc;
+
+    private KShortestPaths(RoadGraph graph) {
+        int n = graph.nodeCount();
+        this.graph = graph;
+        this.dist = new long[n];
+        this.pred = new int[n];
+        this.heap = new IndexedMinHeap(n);
+        this.removedNode = new boolean[n];
+        this.removedArc = new boolean[graph.arcCount()];
+    }
+
+    /**
+     * Calcula hasta k caminos sin ciclos de source a target, de menor a mayor duración.
+     *
+     * @return Caminos como secuencias de nodos (incluyen extremos); vacía si target no es alcanzable.
+     */
+    public static List<int[]> find(RoadGraph graph, int source, int target, int k) {
+        return new KShortestPaths(graph).yen(source, target, k);
+    }
+
+    /**
+     * @return Duración total del camino en minutos según el grafo.
+     */
+    public static long length(RoadGraph graph, int[] path) {
+        long total = 0;
+        for (int i = 0; i < path.length - 1; i++) {
+            total += graph.minutes(graph.findArc(path[i], path[i + 1]));
+        }
+        return total;
+    }
+
+    private List<int[]> yen(int source, int target, int k) {
+        List<int[]> accepted = new ArrayList<>();
+        if (k <= 0 || source == target) {
+            return accepted;
+        }
+        int[] first = dijkstra(source, target);
+        if (first == null) {
+            return accepted;
+        }
+        accepted.add(first);
+
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingLong((Candidate c) -> c.length));
+        Set<List<Integer>> seen = new HashSet<>();
+        seen.add(asList(first));
+
+        while (accepted.size() < k) {
+            int[] previous = accepted.get(accepted.size() - 1);
+            for (int j = 0; j < previous.length - 1; j++) {
+                int spurNode = previous[j];
+                for (int[] path : accepted) {
+                    if (path.length > j + 1 && samePrefix(path, previous, j)) {
+                        removedArc[graph.findArc(path[j], path[j + 1])] = true;
+                    }
+                }
+                for (int i = 0; i < j; i++) {
+                    removedNode[previous[i]] = true;
+                }
+
+                int[] spurPath = dijkstra(spurNode, target);
+                if (spurPath != null) {
+                    int[] total = new int[j + spurPath.length];
+                    System.arraycopy(previous, 0, total, 0, j);
+                    System.arraycopy(spurPath, 0, total, j, spurPath.length);
+                    if (seen.add(asList(total))) {
+                        candidates.add(new Candidate(total, length(graph, total)));
+                    }
+                }
+
+                Arrays.fill(removedArc, false);
+                Arrays.fill(removedNode, false);
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            accepted.add(candidates.poll().path);
+        }
+        return accepted;
+    }
+
+    private int[] dijkstra(int source, int target) {
+        Arrays.fill(dist, Long.MAX_VALUE);
+        Arrays.fill(pred, -1);
+        heap.clear();
+        dist[source] = 0;
+        heap.insertOrDecrease(source, 0);
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            if (u == target) {
+                int length = 1;
+                for (int v = target; v != source; v = pred[v]) {
+                    length++;
+                }
+                int[] path = new int[length];
+                for (int v = target, i = length - 1; i >= 0; v = pred[v], i--) {
+                    path[i] = v;
+                }
+                return path;
+            }
+            for (int arc = graph.firstArc(u), end = graph.endArc(u); arc < end; arc++) {
+                int v = graph.target(arc);
+                if (removedArc[arc] || removedNode[v]) continue;
+                long candidate = dist[u] + graph.minutes(arc);
+                if (candidate < dist[v]) {
+                    dist[v] = candidate;
+                    pred[v] = u;
+                    heap.insertOrDecrease(v, candidate);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean samePrefix(int[] a, int[] b, int lastIndex) {
+        for (int i = 0; i <= lastIndex; i++) {
+            if (a[i] != b[i]) return false;
+        }
+        return true;
+    }
+
+    private static List<Integer> asList(int[] path) {
+        List<Integer> list = new ArrayList<>(path.length);
+        for (int node : path) {
+            list.add(node);
+        }
+        return list;
+    }
+
+    private static final class Candidate {
+        final int[] path;
+        final long length;
+
+        Candidate(int[] path, long length) {
+            this.path = path;
+            this.length = length;
+        }
+    }
+}
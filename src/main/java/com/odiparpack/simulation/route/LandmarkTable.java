@@ -0,0 +1,150 @@
+package com.odiparpack.simulation.route;
+
+import com.odiparpack.utils.Utils;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Cotas inferiores ALT (A*, Landmarks, desigualdad triangular) a partir de distancias precalculadas desde unos
+ * pocos nodos de referencia (landmarks).
+ * <p>
+ * Para cualquier landmark L, d(v, t) &ge; |d(L, t) - d(L, v)|, y el máximo sobre todos los landmarks es una
+ * heurística consistente. Como los tramos son bidireccionales con el mismo tiempo, la distancia desde L y hacia L
+ * coinciden y basta una tabla por landmark. Las distancias se calculan sobre el grafo sin bloqueos; un bloqueo
+ * solo aumenta costos, así que las cotas siguen siendo válidas (y consistentes) sin recalcular nada.
+ * <p>
+ * Los landmarks se eligen por selección del punto más lejano sobre las coordenadas: el primero es el nodo más
+ * alejado del centroide y cada siguiente el que maximiza la distancia al landmark más cercano ya elegido. Así
+ * quedan en la periferia del mapa, donde la desigualdad triangular da mejores cotas, y la selección no depende
+ * de los caminos, que se calculan después en paralelo.
+ */
+public final class LandmarkTable {
+    private static final Logger logger = Logger.getLogger(LandmarkTable.class.getName());
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final int[] landmarks;
+    private final int[][] distances; // [landmark][nodo] en minutos, UNREACHABLE si no hay camino
+
+    private LandmarkTable(int[] landmarks, int[][] distances) {
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    /**
+     * Elige los landmarks y calcula, en paralelo, un Dijkstra completo desde cada uno.
+     *
+     * @param graph         Grafo de carreteras en formato CSR, sin bloqueos.
+     * @param landmarkCount Número de landmarks deseado (se limita al número de nodos).
+     * @return Tabla lista para consultas concurrentes.
+     */
+    public static LandmarkTable build(RoadGraph graph, int landmarkCount) {
+        long startNanos = System.nanoTime();
+        int[] landmarks = selectFarthestPoints(graph, Math.min(landmarkCount, graph.nodeCount()));
+        int[][] distances = new int[landmarks.length][];
+        IntStream.range(0, landmarks.length).parallel()
+                .forEach(i -> distances[i] = distancesFrom(graph, landmarks[i]));
+
+        LandmarkTable table = new LandmarkTable(landmarks, distances);
+        logger.info(String.format("Tabla ALT construida: %d landmarks, %d KB en %d ms", landmarks.length,
+                table.getMemoryBytes() / 1024, (System.nanoTime() - startNanos) / 1_000_000));
+        return table;
+    }
+
+    private static int[] selectFarthestPoints(RoadGraph graph, int count) {
+        int n = graph.nodeCount();
+        if (count <= 0) {
+            return new int[0];
+        }
+        double centroidLatitude = 0;
+        double centroidLongitude = 0;
+        for (int v = 0; v < n; v++) {
+            centroidLatitude += graph.latitude(v);
+            centroidLongitude += graph.longitude(v);
+        }
+        centroidLatitude /= n;
+        centroidLongitude /= n;
+
+        // nearestKm[v]: distancia al landmark elegido más cercano (al centroide antes de elegir el primero)
+        double[] nearestKm = new double[n];
+        for (int v = 0; v < n; v++) {
+            nearestKm[v] = Utils.calculateDistance(centroidLatitude, centroidLongitude,
+                    graph.latitude(v), graph.longitude(v));
+        }
+        int[] landmarks = new int[count];
+        for (int i = 0; i < count; i++) {
+            int farthest = 0;
+            for (int v = 1; v < n; v++) {
+                if (nearestKm[v] > nearestKm[farthest]) {
+                    farthest = v;
+                }
+            }
+            landmarks[i] = farthest;
+            for (int v = 0; v < n; v++) {
+                double km = Utils.calculateDistance(graph.latitude(farthest), graph.longitude(farthest),
+                        graph.latitude(v), graph.longitude(v));
+                nearestKm[v] = i == 0 ? km : Math.min(nearestKm[v], km);
+            }
+            nearestKm[farthest] = -1; // no volver a elegirlo aunque haya ubicaciones con las mismas coordenadas
+        }
+        return landmarks;
+    }
+
+    private static int[] distancesFrom(RoadGraph graph, int source) {
+        int n = graph.nodeCount();
+        long[] dist = new long[n];
+        Arrays.fill(dist, Long.MAX_VALUE);
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        dist[source] = 0;
+        heap.insertOrDecrease(source, 0);
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            for (int arc = graph.firstArc(u), end = graph.endArc(u); arc < end; arc++) {
+                int v = graph.target(arc);
+                long candidate = dist[u] + graph.minutes(arc);
+                if (candidate < dist[v]) {
+                    dist[v] = candidate;
+                    heap.insertOrDecrease(v, candidate);
+                }
+            }
+        }
+        int[] result = new int[n];
+        for (int v = 0; v < n; v++) {
+            result[v] = dist[v] == Long.MAX_VALUE ? UNREACHABLE : Math.toIntExact(dist[v]);
+        }
+        return result;
+    }
+
+    /**
+     * @return Minutos mínimos de from a to según la desigualdad triangular (nunca sobreestima, aun con bloqueos).
+     */
+    public long lowerBound(int from, int to) {
+        long best = 0;
+        for (int[] row : distances) {
+            int dFrom = row[from];
+            int dTo = row[to];
+            if (dFrom == UNREACHABLE || dTo == UNREACHABLE) continue;
+            best = Math.max(best, Math.abs((long) dTo - dFrom));
+        }
+        return best;
+    }
+
+    /**
+     * @return Nodos elegidos como landmarks, en orden de selección.
+     */
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * @return Memoria aproximada de las tablas de distancias, en bytes.
+     */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (int[] row : distances) {
+            bytes += 4L * row.length;
+        }
+        return bytes;
+    }
+}
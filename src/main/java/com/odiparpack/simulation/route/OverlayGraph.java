@@ -0,0 +1,513 @@
+package com.odiparpack.simulation.route;
+
+import com.odiparpack.simulation.blockage.BlockageSnapshot;
+import com.odiparpack.models.Location;
+
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Grafo de overlay multinivel al estilo Customizable Route Planning (CRP), pensado para que los bloqueos no
+ * invaliden el preprocesamiento.
+ * <p>
+ * La partición toma la geografía como pista: en el nivel 0 cada celda es un departamento dentro de una región
+ * natural y en el nivel 1 cada celda es una región natural (COSTA, SIERRA, SELVA), de modo que las celdas quedan
+ * anidadas. Un nodo es frontera de una celda si tiene un tramo hacia otra celda del mismo nivel. La topología
+ * (celdas y fronteras) no depende de los bloqueos; solo la métrica sí: para cada celda se guarda una clique con
+ * el tiempo mínimo, dentro de la celda, entre cada par de nodos frontera. Las cliques del nivel 0 se calculan
+ * sobre el grafo original y las del nivel 1 sobre el overlay del nivel 0.
+ * <p>
+ * Al cambiar los bloqueos solo se recalculan (en paralelo) las cliques de las celdas que contienen un tramo
+ * cambiado, y la métrica nueva se publica completa, así que las consultas en curso no necesitan bloqueo. Una
+ * consulta s→t es un Dijkstra que usa tramos originales en las celdas de s y t y, fuera de ellas, las cliques
+ * del nivel más alto cuya celda no contiene ni a s ni a t. Los tiempos son exactos con los bloqueos aplicados.
+ */
+public final class OverlayGraph implements TravelTimeOracle {
+    private static final Logger logger = Logger.getLogger(OverlayGraph.class.getName());
+
+    private static final int LEVELS = 2;
+    private static final int ORIGINAL_ARC = -1; // Nivel del arco por el que se llegó a un nodo: tramo original
+
+    private final RoadGraph graph;
+    private final int n;
+    private final int[] arcSource;
+    private final int[][] cellOf;          // [nivel][nodo] -> celda
+    private final int[][][] members;       // [nivel][celda] -> nodos del overlay del nivel dentro de la celda
+    private final int[][] memberIndex;     // [nivel][nodo] -> posición en members de su celda, -1 si no es miembro
+    private final int[][][] boundary;      // [nivel][celda] -> nodos frontera
+    private final int[][] boundaryIndex;   // [nivel][nodo] -> posición en boundary de su celda, -1 si no es frontera
+    private final ThreadLocal<QueryState> queryStates;
+    private volatile Metric metric;
+
+    /**
+     * Métrica inmutable: tramos bloqueados y cliques por celda (matriz b × b por filas, con UNREACHABLE si no
+     * hay camino dentro de la celda). Las celdas no afectadas por un cambio comparten la clique anterior.
+     */
+    private static final class Metric {
+        final BitSet blockedArcs;
+        final long[][][] cliques;
+
+        Metric(BitSet blockedArcs, long[][][] cliques) {
+            this.blockedArcs = blockedArcs;
+            this.cliques = cliques;
+        }
+    }
+
+    private OverlayGraph(RoadGraph graph, String[][] cellKeys) {
+        this.graph = graph;
+        this.n = graph.nodeCount();
+        this.arcSource = new int[graph.arcCount()];
+        for (int u = 0; u < n; u++) {
+            for (int arc = graph.firstArc(u), end = graph.endArc(u); arc < end; arc++) {
+                arcSource[arc] = u;
+            }
+        }
+
+        this.cellOf = new int[LEVELS][n];
+        this.members = new int[LEVELS][][];
+        this.memberIndex = new int[LEVELS][n];
+        this.boundary = new int[LEVELS][][];
+        this.boundaryIndex = new int[LEVELS][n];
+        for (int level = 0; level < LEVELS; level++) {
+            Map<String, Integer> cellIds = new LinkedHashMap<>();
+            for (int v = 0; v < n; v++) {
+                cellOf[level][v] = cellIds.computeIfAbsent(cellKeys[level][v], key -> cellIds.size());
+            }
+            List<List<Integer>> cellMembers = new ArrayList<>();
+            List<List<Integer>> cellBoundary = new ArrayList<>();
+            for (int c = 0; c < cellIds.size(); c++) {
+                cellMembers.add(new ArrayList<>());
+                cellBoundary.add(new ArrayList<>());
+            }
+            Arrays.fill(memberIndex[level], -1);
+            Arrays.fill(boundaryIndex[level], -1);
+            for (int v = 0; v < n; v++) {
+                // En el nivel 0 participan todos los nodos; en los siguientes, solo la frontera del nivel anterior
+                if (level > 0 && boundaryIndex[level - 1][v] < 0) continue;
+                int cell = cellOf[level][v];
+                memberIndex[level][v] = cellMembers.get(cell).size();
+                cellMembers.get(cell).add(v);
+                if (hasArcLeavingCell(level, v)) {
+                    boundaryIndex[level][v] = cellBoundary.get(cell).size();
+                    cellBoundary.get(cell).add(v);
+                }
+            }
+            members[level] = toArrays(cellMembers);
+            boundary[level] = toArrays(cellBoundary);
+        }
+        this.queryStates = ThreadLocal.withInitial(() -> new QueryState(n));
+    }
+
+    /**
+     * Construye la partición a partir de la región natural y el departamento de cada ubicación y personaliza la
+     * métrica del grafo sin bloqueos.
+     *
+     * @param graph     Grafo de carreteras en formato CSR.
+     * @param locations Ubicaciones del grafo (con región natural y departamento).
+     * @return Overlay listo para consultas concurrentes.
+     */
+    public static OverlayGraph build(RoadGraph graph, Collection<Location> locations) {
+        long startNanos = System.nanoTime();
+        int n = graph.nodeCount();
+        String[][] cellKeys = new String[LEVELS][n];
+        for (String[] keys : cellKeys) {
+            Arrays.fill(keys, "");
+        }
+        for (Location location : locations) {
+            int node = graph.indexOf(location.getUbigeo());
+            if (node < 0) continue;
+            String region = Objects.toString(location.getNaturalRegion(), "");
+            cellKeys[0][node] = region + "/" + Objects.toString(location.getDepartment(), "");
+            cellKeys[1][node] = region;
+        }
+
+        OverlayGraph overlay = new OverlayGraph(graph, cellKeys);
+        overlay.metric = overlay.customize(null, new BitSet(graph.arcCount()), null);
+
+        StringBuilder summary = new StringBuilder();
+        for (int level = 0; level < LEVELS; level++) {
+            int boundaryNodes = Arrays.stream(overlay.boundary[level]).mapToInt(cell -> cell.length).sum();
+            summary.append(String.format(" nivel %d: %d celdas y %d nodos frontera;",
+                    level, overlay.boundary[level].length, boundaryNodes));
+        }
+        logger.info(String.format("Overlay multinivel construido:%s %d KB en %d ms", summary,
+                overlay.getMemoryBytes() / 1024, (System.nanoTime() - startNanos) / 1_000_000));
+        return overlay;
+    }
+
+    private boolean hasArcLeavingCell(int level, int v) {
+        for (int arc = graph.firstArc(v), end = graph.endArc(v); arc < end; arc++) {
+            if (cellOf[level][graph.target(arc)] != cellOf[level][v]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        int[][] arrays = new int[lists.size()][];
+        for (int i = 0; i < lists.size(); i++) {
+            arrays[i] = lists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return arrays;
+    }
+
+    /**
+     * Sincroniza la métrica con la vista de bloqueos activos. Solo se recalculan las cliques de las celdas que
+     * contienen algún arco cuyo estado cambió desde la última sincronización.
+     *
+     * @return true si la métrica cambió.
+     */
+    public synchronized boolean applyBlockages(BlockageSnapshot blockages) {
+        BitSet blocked = blockages.getBlockedArcs();
+
+        Metric current = metric;
+        if (blocked.equals(current.blockedArcs)) {
+            return false;
+        }
+        BitSet changed = (BitSet) blocked.clone();
+        changed.xor(current.blockedArcs);
+
+        // Un tramo solo afecta a las cliques de las celdas que contienen sus dos extremos
+        boolean[][] dirty = new boolean[LEVELS][];
+        int dirtyCells = 0;
+        for (int level = 0; level < LEVELS; level++) {
+            dirty[level] = new boolean[boundary[level].length];
+        }
+        for (int arc = changed.nextSetBit(0); arc >= 0; arc = changed.nextSetBit(arc + 1)) {
+            int u = arcSource[arc];
+            int v = graph.target(arc);
+            for (int level = 0; level < LEVELS; level++) {
+                int cell = cellOf[level][u];
+                if (cell == cellOf[level][v] && !dirty[level][cell]) {
+                    dirty[level][cell] = true;
+                    dirtyCells++;
+                }
+            }
+        }
+
+        long startNanos = System.nanoTime();
+        metric = customize(current, blocked, dirty);
+        logger.info(String.format("Overlay re-personalizado: %d arcos cambiados, %d celdas recalculadas en %.2f ms",
+                changed.cardinality(), dirtyCells, (System.nanoTime() - startNanos) / 1e6));
+        return true;
+    }
+
+    /**
+     * Calcula una métrica nueva, nivel por nivel y con las celdas de cada nivel en paralelo.
+     *
+     * @param previous Métrica anterior, cuyas cliques se reutilizan en las celdas limpias (null al construir).
+     * @param dirty    Celdas a recalcular por nivel (null para recalcular todas).
+     */
+    private Metric customize(Metric previous, BitSet blockedArcs, boolean[][] dirty) {
+        long[][][] cliques = new long[LEVELS][][];
+        for (int level = 0; level < LEVELS; level++) {
+            cliques[level] = previous == null ? new long[boundary[level].length][] : previous.cliques[level].clone();
+        }
+        Metric next = new Metric(blockedArcs, cliques);
+        for (int level = 0; level < LEVELS; level++) {
+            int currentLevel = level;
+            IntStream.range(0, boundary[level].length)
+                    .filter(cell -> dirty == null || dirty[currentLevel][cell])
+                    .parallel()
+                    .forEach(cell -> cliques[currentLevel][cell] = computeClique(next, currentLevel, cell));
+        }
+        return next;
+    }
+
+    /**
+     * Un Dijkstra por nodo frontera, restringido a los miembros de la celda: en el nivel 0 sobre los tramos
+     * originales y en los siguientes sobre las cliques del nivel anterior más los tramos entre sus celdas.
+     */
+    private long[] computeClique(Metric metric, int level, int cell) {
+        int[] cellMembers = members[level][cell];
+        int[] cellBoundary = boundary[level][cell];
+        int b = cellBoundary.length;
+        long[] clique = new long[b * b];
+        long[] dist = new long[cellMembers.length];
+        IndexedMinHeap heap = new IndexedMinHeap(cellMembers.length);
+
+        for (int i = 0; i < b; i++) {
+            Arrays.fill(dist, UNREACHABLE);
+            int source = memberIndex[level][cellBoundary[i]];
+            dist[source] = 0;
+            heap.insertOrDecrease(source, 0);
+            while (!heap.isEmpty()) {
+                int local = heap.poll();
+                int u = cellMembers[local];
+                long du = dist[local];
+
+                if (level > 0) {
+                    int lower = level - 1;
+                    int lowerCell = cellOf[lower][u];
+                    int[] lowerBoundary = boundary[lower][lowerCell];
+                    long[] lowerClique = metric.cliques[lower][lowerCell];
+                    int row = boundaryIndex[lower][u] * lowerBoundary.length;
+                    for (int j = 0; j < lowerBoundary.length; j++) {
+                        long w = lowerClique[row + j];
+                        if (w == UNREACHABLE) continue;
+                        relaxLocal(dist, heap, memberIndex[level][lowerBoundary[j]], du + w);
+                    }
+                }
+                for (int arc = graph.firstArc(u), end = graph.endArc(u); arc < end; arc++) {
+                    if (metric.blockedArcs.get(arc)) continue;
+                    int v = graph.target(arc);
+                    if (cellOf[level][v] != cell) continue;
+                    // Dentro de una celda del nivel anterior el tramo ya está en la clique
+                    if (level > 0 && cellOf[level - 1][v] == cellOf[level - 1][u]) continue;
+                    relaxLocal(dist, heap, memberIndex[level][v], du + graph.minutes(arc));
+                }
+            }
+            for (int j = 0; j < b; j++) {
+                clique[i * b + j] = dist[memberIndex[level][cellBoundary[j]]];
+            }
+        }
+        return clique;
+    }
+
+    private static void relaxLocal(long[] dist, IndexedMinHeap heap, int local, long candidate) {
+        if (candidate < dist[local]) {
+            dist[local] = candidate;
+            heap.insertOrDecrease(local, candidate);
+        }
+    }
+
+    @Override
+    public long travelTime(int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+        QueryState state = queryStates.get();
+        try {
+            return search(metric, state, from, to);
+        } finally {
+            state.reset();
+        }
+    }
+
+    /**
+     * Camino mínimo con los bloqueos aplicados; los arcos de clique se desempaquetan con un Dijkstra restringido
+     * a su celda.
+     *
+     * @return Secuencia de nodos del camino (incluye extremos) o null si to no es alcanzable.
+     */
+    public int[] shortestPath(int from, int to) {
+        if (from == to) {
+            return new int[]{from};
+        }
+        Metric current = metric;
+        QueryState state = queryStates.get();
+        int[] overlayPath;
+        int[] arcLevels;
+        try {
+            if (search(current, state, from, to) == UNREACHABLE) {
+                return null;
+            }
+            int length = 1;
+            for (int v = to; v != from; v = state.pred[v]) {
+                length++;
+            }
+            overlayPath = new int[length];
+            arcLevels = new int[length];
+            for (int v = to, i = length - 1; i >= 0; v = state.pred[v], i--) {
+                overlayPath[i] = v;
+                arcLevels[i] = state.predLevel[v];
+            }
+        } finally {
+            state.reset();
+        }
+
+        IntList path = new IntList();
+        path.add(from);
+        for (int i = 1; i < overlayPath.length; i++) {
+            if (arcLevels[i] == ORIGINAL_ARC) {
+                path.add(overlayPath[i]);
+            } else {
+                unpack(current, state, arcLevels[i], overlayPath[i - 1], overlayPath[i], path);
+            }
+        }
+        return path.toArray();
+    }
+
+    /**
+     * Dijkstra sobre el grafo de consulta: en las celdas de from y to se usan los tramos originales; en el resto,
+     * desde cada nodo frontera, la clique de su celda del nivel más alto que no contiene a from ni a to y los
+     * tramos que salen de esa celda.
+     */
+    private long search(Metric metric, QueryState state, int from, int to) {
+        long[] dist = state.dist;
+        state.touch(from, 0, -1, ORIGINAL_ARC);
+        state.heap.insertOrDecrease(from, 0);
+        while (!state.heap.isEmpty()) {
+            int u = state.heap.poll();
+            long du = dist[u];
+            if (u == to) {
+                return du;
+            }
+            int level = queryLevel(u, from, to);
+            if (level == ORIGINAL_ARC) {
+                for (int arc = graph.firstArc(u), end = graph.endArc(u); arc < end; arc++) {
+                    if (metric.blockedArcs.get(arc)) continue;
+                    state.relax(graph.target(arc), du + graph.minutes(arc), u, ORIGINAL_ARC);
+                }
+                continue;
+            }
+            int cell = cellOf[level][u];
+            int[] cellBoundary = boundary[level][cell];
+            long[] clique = metric.cliques[level][cell];
+            int row = boundaryIndex[level][u] * cellBoundary.length;
+            for (int j = 0; j < cellBoundary.length; j++) {
+                long w = clique[row + j];
+                if (w == UNREACHABLE || cellBoundary[j] == u) continue;
+                state.relax(cellBoundary[j], du + w, u, level);
+            }
+            for (int arc = graph.firstArc(u), end = graph.endArc(u); arc < end; arc++) {
+                int v = graph.target(arc);
+                if (cellOf[level][v] == cell || metric.blockedArcs.get(arc)) continue;
+                state.relax(v, du + graph.minutes(arc), u, ORIGINAL_ARC);
+            }
+        }
+        return UNREACHABLE;
+    }
+
+    /**
+     * @return Nivel más alto cuya celda de v no contiene a from ni a to y del que v es frontera; ORIGINAL_ARC si
+     * v comparte celda con from o con to en todos los niveles.
+     */
+    private int queryLevel(int v, int from, int to) {
+        for (int level = LEVELS - 1; level >= 0; level--) {
+            int cell = cellOf[level][v];
+            if (cell != cellOf[level][from] && cell != cellOf[level][to] && boundaryIndex[level][v] >= 0) {
+                return level;
+            }
+        }
+        return ORIGINAL_ARC;
+    }
+
+    /**
+     * Reemplaza el arco de clique from→to por el camino mínimo de tramos originales dentro de su celda y lo agrega
+     * a path (sin repetir from).
+     */
+    private void unpack(Metric metric, QueryState state, int level, int from, int to, IntList path) {
+        int cell = cellOf[level][from];
+        long[] dist = state.dist;
+        try {
+            state.touch(from, 0, -1, ORIGINAL_ARC);
+            state.heap.insertOrDecrease(from, 0);
+            while (!state.heap.isEmpty()) {
+                int u = state.heap.poll();
+                if (u == to) break;
+                for (int arc = graph.firstArc(u), end = graph.endArc(u); arc < end; arc++) {
+                    int v = graph.target(arc);
+                    if (cellOf[level][v] != cell || metric.blockedArcs.get(arc)) continue;
+                    state.relax(v, dist[u] + graph.minutes(arc), u, ORIGINAL_ARC);
+                }
+            }
+            int start = path.size();
+            for (int v = to; v != from; v = state.pred[v]) {
+                path.add(v);
+            }
+            path.reverseFrom(start);
+        } finally {
+            state.reset();
+        }
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    /**
+     * @return Memoria aproximada de la partición y de las cliques de la métrica actual, en bytes.
+     */
+    public long getMemoryBytes() {
+        long bytes = 4L * arcSource.length + 4L * 4 * LEVELS * n;
+        for (long[][] levelCliques : metric.cliques) {
+            for (long[] clique : levelCliques) {
+                bytes += 8L * clique.length;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Estado reutilizable de una consulta; solo se limpian los nodos tocados.
+     */
+    private static final class QueryState {
+        final long[] dist;
+        final int[] pred;
+        final int[] predLevel;
+        final IndexedMinHeap heap;
+        final IntList touched = new IntList();
+
+        QueryState(int n) {
+            dist = new long[n];
+            pred = new int[n];
+            predLevel = new int[n];
+            heap = new IndexedMinHeap(n);
+            Arrays.fill(dist, UNREACHABLE);
+        }
+
+        void touch(int v, long d, int from, int level) {
+            if (dist[v] == UNREACHABLE) {
+                touched.add(v);
+            }
+            dist[v] = d;
+            pred[v] = from;
+            predLevel[v] = level;
+        }
+
+        void relax(int v, long candidate, int from, int level) {
+            if (candidate < dist[v]) {
+                touch(v, candidate, from, level);
+                heap.insertOrDecrease(v, candidate);
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < touched.size(); i++) {
+                dist[touched.get(i)] = UNREACHABLE;
+            }
+            touched.clear();
+            heap.clear();
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void reverseFrom(int start) {
+            for (int i = start, j = size - 1; i < j; i++, j--) {
+                int tmp = values[i];
+                values[i] = values[j];
+                values[j] = tmp;
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.odiparpack.simulation.route;
+
+import com.odiparpack.models.Edge;
+import com.odiparpack.models.Location;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Grafo de carreteras inmutable en formato CSR (compressed sparse row).
+ * <p>
+ * Los nodos son enteros en el mismo orden que la lista de ubicaciones (y que los índices de la matriz de tiempos).
+ * Los arcos salientes del nodo u ocupan las posiciones [firstArc(u), endArc(u)) de los arreglos de destino,
+ * minutos y kilómetros, ordenados por destino. Cada tramo se guarda en ambos sentidos, igual que en
+ * DataLoader.createTimeMatrix. Como no se modifica tras construirse, puede compartirse entre hilos sin bloqueo y
+ * recorrer vecinos no reserva memoria:
+ * <pre>
+ * for (int arc = graph.firstArc(u), end = graph.endArc(u); arc &lt; end; arc++) { graph.target(arc) ... }
+ * </pre>
+ */
+public final class RoadGraph {
+    private static final Logger logger = Logger.getLogger(RoadGraph.class.getName());
+
+    private final int n;
+    private final List<String> ubigeos;
+    private final Map<String, Integer> indices;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] offset;     // n + 1 posiciones
+    private final int[] target;
+    private final int[] minutes;
+    private final double[] distanceKm;
+    private final long fingerprint;
+
+    private RoadGraph(List<String> ubigeos, Map<String, Integer> indices, double[] latitudes, double[] longitudes,
+                      int[] offset, int[] target, int[] minutes, double[] distanceKm, long fingerprint) {
+        this.n = ubigeos.size();
+        this.ubigeos = ubigeos;
+        this.indices = indices;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.offset = offset;
+        this.target = target;
+        this.minutes = minutes;
+        this.distanceKm = distanceKm;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Construye el grafo a partir de los tramos cargados por DataLoader.loadEdges, que ya traen la distancia
+     * (Utils.calculateDistance) y el tiempo (según Utils.getAverageSpeed). Los minutos se truncan como en la
+     * matriz de tiempos y, si un par de ubicaciones aparece varias veces, gana el último tramo.
+     *
+     * @param locations Ubicaciones en el orden de los índices de la matriz de tiempos.
+     * @param edges     Tramos entre ubicaciones.
+     * @return Grafo listo para compartir.
+     */
+    public static RoadGraph build(List<Location> locations, List<Edge> edges) {
+        long startNanos = System.nanoTime();
+        int n = locations.size();
+        List<String> ubigeos = new ArrayList<>(n);
+        Map<String, Integer> indices = new HashMap<>(n * 2);
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        long hash = 1125899906842597L;
+        for (int i = 0; i < n; i++) {
+            Location location = locations.get(i);
+            ubigeos.add(location.getUbigeo());
+            indices.put(location.getUbigeo(), i);
+            latitudes[i] = location.getLatitude();
+            longitudes[i] = location.getLongitude();
+            hash = 31 * hash + location.getUbigeo().hashCode();
+        }
+
+        // Un tramo por par no ordenado de nodos, con clave min * n + max
+        Map<Long, Edge> edgeByPair = new HashMap<>(edges.size() * 2);
+        for (Edge edge : edges) {
+            Integer fromIndex = indices.get(edge.getOriginUbigeo());
+            Integer toIndex = indices.get(edge.getDestinationUbigeo());
+            if (fromIndex == null || toIndex == null) continue;
+            long travelTime = (long) (edge.getTravelTime() * 60); // Convertir horas a minutos
+            hash = 31 * (31 * (31 * hash + fromIndex) + toIndex) + travelTime;
+            if (fromIndex.equals(toIndex)) continue;
+            edgeByPair.put(pairKey(fromIndex, toIndex, n), edge);
+        }
+
+        // Arcos dirigidos ordenados por (origen, destino)
+        long[] arcKeys = new long[edgeByPair.size() * 2];
+        int k = 0;
+        for (long key : edgeByPair.keySet()) {
+            long low = key / n;
+            long high = key % n;
+            arcKeys[k++] = low * n + high;
+            arcKeys[k++] = high * n + low;
+        }
+        Arrays.sort(arcKeys);
+
+        int[] offset = new int[n + 1];
+        int[] target = new int[arcKeys.length];
+        int[] minutes = new int[arcKeys.length];
+        double[] distanceKm = new double[arcKeys.length];
+        for (int arc = 0; arc < arcKeys.length; arc++) {
+            int from = (int) (arcKeys[arc] / n);
+            int to = (int) (arcKeys[arc] % n);
+            Edge edge = edgeByPair.get(pairKey(from, to, n));
+            offset[from + 1]++;
+            target[arc] = to;
+            minutes[arc] = Math.toIntExact((long) (edge.getTravelTime() * 60));
+            distanceKm[arc] = edge.getDistance();
+        }
+        for (int i = 0; i < n; i++) {
+            offset[i + 1] += offset[i];
+        }
+
+        RoadGraph graph = new RoadGraph(Collections.unmodifiableList(ubigeos), Collections.unmodifiableMap(indices),
+                latitudes, longitudes, offset, target, minutes, distanceKm, hash);
+        logger.info(String.format("Grafo CSR construido: %d nodos, %d arcos, %d KB en %d ms",
+                n, target.length, graph.getMemoryBytes() / 1024, (System.nanoTime() - startNanos) / 1_000_000));
+        return graph;
+    }
+
+    private static long pairKey(int a, int b, int n) {
+        return (long) Math.min(a, b) * n + Math.max(a, b);
+    }
+
+    /**
+     * Genera la matriz densa de tramos directos: minutos en los arcos, 0 en la diagonal y Long.MAX_VALUE en
+     * el resto.
+     */
+    public long[][] toTimeMatrix() {
+        long[][] timeMatrix = new long[n][n];
+        for (int u = 0; u < n; u++) {
+            long[] row = timeMatrix[u];
+            Arrays.fill(row, Long.MAX_VALUE);
+            row[u] = 0;
+            for (int arc = offset[u], end = offset[u + 1]; arc < end; arc++) {
+                row[target[arc]] = minutes[arc];
+            }
+        }
+        return timeMatrix;
+    }
+
+    public int nodeCount() {
+        return n;
+    }
+
+    public int arcCount() {
+        return target.length;
+    }
+
+    public int firstArc(int node) {
+        return offset[node];
+    }
+
+    public int endArc(int node) {
+        return offset[node + 1];
+    }
+
+    public int target(int arc) {
+        return target[arc];
+    }
+
+    /**
+     * @return Nodo de origen del arco (búsqueda binaria sobre los desplazamientos).
+     */
+    public int source(int arc) {
+        int low = 0;
+        int high = n - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offset[mid] <= arc) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public int minutes(int arc) {
+        return minutes[arc];
+    }
+
+    public double distanceKm(int arc) {
+        return distanceKm[arc];
+    }
+
+    /**
+     * @return Posición del arco from→to, o -1 si no hay tramo directo (búsqueda binaria sobre los destinos).
+     */
+    public int findArc(int from, int to) {
+        int index = Arrays.binarySearch(target, offset[from], offset[from + 1], to);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * @return Índice del nodo, o -1 si el ubigeo no está en el grafo.
+     */
+    public int indexOf(String ubigeo) {
+        Integer index = indices.get(ubigeo);
+        return index != null ? index : -1;
+    }
+
+    public String ubigeo(int node) {
+        return ubigeos.get(node);
+    }
+
+    public List<String> getUbigeos() {
+        return ubigeos;
+    }
+
+    public Map<String, Integer> getLocationIndices() {
+        return indices;
+    }
+
+    public double latitude(int node) {
+        return latitudes[node];
+    }
+
+    public double longitude(int node) {
+        return longitudes[node];
+    }
+
+    /**
+     * @return Huella de ubicaciones y tramos; cambia si cambia cualquiera de los archivos de entrada.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return Memoria aproximada de los arreglos primitivos, en bytes.
+     */
+    public long getMemoryBytes() {
+        return 4L * offset.length + (4L + 4L + 8L) * target.length + 16L * n;
+    }
+}
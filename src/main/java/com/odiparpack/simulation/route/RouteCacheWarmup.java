@@ -0,0 +1,156 @@
+package com.odiparpack.simulation.route;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.odiparpack.models.RouteCache;
+import com.odiparpack.models.RouteSegment;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Precalentamiento de la caché de rutas al arrancar: calcula en segundo plano la ruta de cada almacén principal a
+ * cada ubicación y la guarda en RouteCache, en un pool de tamaño acotado. Quien la inicia no espera; mientras
+ * tanto las consultas de pares aún no calculados fallan como antes y se resuelven aparte.
+ * <p>
+ * Solo se calcula el sentido almacén → destino: los tramos son bidireccionales con el mismo tiempo y RouteCache
+ * sirve el regreso con la vista invertida de la misma versión, así que guardar ambos sentidos duplicaría
+ * entradas sin ganar aciertos. Los pares que ya están en caché (por ejemplo, cargados del archivo) se omiten.
+ */
+public final class RouteCacheWarmup {
+    private static final Logger logger = Logger.getLogger(RouteCacheWarmup.class.getName());
+    private static final int BATCH_SIZE = 16;
+
+    private final int total;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger computed = new AtomicInteger();
+    private final CompletableFuture<Void> done;
+
+    private RouteCacheWarmup(RouteCache routeCache, List<int[]> pairs, List<String> locationUbigeos,
+                             Supplier<ShortestPathEngine> engines, int threads) {
+        this.total = pairs.size();
+        long startNanos = System.nanoTime();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "route-warmup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        for (int from = 0; from < pairs.size(); from += BATCH_SIZE) {
+            List<int[]> batch = pairs.subList(from, Math.min(pairs.size(), from + BATCH_SIZE));
+            batches.add(CompletableFuture.runAsync(() -> runBatch(routeCache, batch, locationUbigeos, engines), pool));
+        }
+        this.done = CompletableFuture.allOf(batches.toArray(CompletableFuture<?>[]::new))
+                .whenComplete((ignored, error) -> {
+                    pool.shutdown();
+                    if (error != null) {
+                        logger.warning("Precalentamiento de rutas interrumpido: " + error);
+                    } else {
+                        logger.info(String.format("Precalentamiento de rutas terminado: %d pares, %d calculados, "
+                                        + "%d ya en caché, en %d ms con %d hilos", total, computed.get(),
+                                total - computed.get(), (System.nanoTime() - startNanos) / 1_000_000, threads));
+                    }
+                });
+    }
+
+    /**
+     * Inicia el precalentamiento y retorna de inmediato.
+     *
+     * @param routeCache       Caché donde se guardan las rutas.
+     * @param warehouseUbigeos Ubigeos de los almacenes principales.
+     * @param locationUbigeos  Ubigeos en el orden de los nodos del motor.
+     * @param engines          Crea un motor por lote (los motores no son seguros entre hilos).
+     * @param threads          Tamaño del pool.
+     * @return Precalentamiento en curso, para consultar su avance o esperar a que termine.
+     */
+    public static RouteCacheWarmup start(RouteCache routeCache, Collection<String> warehouseUbigeos,
+                                         List<String> locationUbigeos, Supplier<ShortestPathEngine> engines,
+                                         int threads) {
+        List<int[]> pairs = new ArrayList<>();
+        for (String warehouse : warehouseUbigeos) {
+            int from = locationUbigeos.indexOf(warehouse);
+            if (from < 0) {
+                logger.warning("Almacén desconocido para el precalentamiento de rutas: " + warehouse);
+                continue;
+            }
+            for (int to = 0; to < locationUbigeos.size(); to++) {
+                if (to != from) {
+                    pairs.add(new int[]{from, to});
+                }
+            }
+        }
+        logger.info(String.format("Precalentamiento de rutas iniciado: %d pares desde %d almacenes con %d hilos",
+                pairs.size(), warehouseUbigeos.size(), threads));
+        return new RouteCacheWarmup(routeCache, pairs, locationUbigeos, engines, Math.max(1, threads));
+    }
+
+    private void runBatch(RouteCache routeCache, List<int[]> batch, List<String> locationUbigeos,
+                          Supplier<ShortestPathEngine> engines) {
+        ShortestPathEngine engine = engines.get();
+        for (int[] pair : batch) {
+            String from = locationUbigeos.get(pair[0]);
+            String to = locationUbigeos.get(pair[1]);
+            if (!routeCache.containsRoute(from, to)) {
+                List<RouteSegment> route = engine.findRouteBidirectional(pair[0], pair[1]);
+                if (!route.isEmpty()) {
+                    routeCache.putRoute(from, to, route, Collections.emptyList());
+                }
+                computed.incrementAndGet();
+            }
+            reportProgress(completed.incrementAndGet());
+        }
+    }
+
+    private void reportProgress(int count) {
+        int step = Math.max(1, total / 10);
+        if (count % step == 0 || count == total) {
+            logger.info(String.format("Precalentamiento de rutas: %d/%d pares (%d %%)", count, total,
+                    100 * count / total));
+        }
+    }
+
+    /**
+     * Registra el avance (pares procesados y total) como métricas.
+     */
+    public void registerMetrics(MetricRegistry registry) {
+        String completedName = MetricRegistry.name(RouteCacheWarmup.class, "completed");
+        String totalName = MetricRegistry.name(RouteCacheWarmup.class, "total");
+        registry.remove(completedName);
+        registry.remove(totalName);
+        registry.register(completedName, (Gauge<Integer>) completed::get);
+        registry.register(totalName, (Gauge<Integer>) () -> total);
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return Fracción de pares procesados, entre 0 y 1.
+     */
+    public double getProgress() {
+        return total == 0 ? 1.0 : (double) completed.get() / total;
+    }
+
+    public boolean isDone() {
+        return done.isDone();
+    }
+
+    /**
+     * @return Futuro que se completa al procesar todos los pares.
+     */
+    public CompletableFuture<Void> whenDone() {
+        return done;
+    }
+}
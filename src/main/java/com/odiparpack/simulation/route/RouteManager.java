@@ -1,19 +1,31 @@
 package com.odiparpack.simulation.route;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.ortools.constraintsolver.*;
 import com.google.protobuf.Duration;
 import com.odiparpack.DataLoader;
 import com.odiparpack.DataModel;
+import com.odiparpack.Main;
 import com.odiparpack.models.*;
 import com.odiparpack.simulation.blockage.BlockageManager;
 import com.odiparpack.utils.Utils;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 /**
  * La clase RouteManager se encarga de calcular y asignar rutas a los vehículos.
+ * <p>
+ * La planificación de órdenes, el retorno a almacenes (en un hilo aparte) y los reruteos pueden fallar en la
+ * caché para el mismo par a la vez. Un registro de cálculos en curso por par hace que solo el primero resuelva;
+ * los demás esperan el mismo CompletableFuture y se cuentan en la métrica RouteManager.coalescedRequests.
  */
 public class RouteManager {
     private static final Logger logger = Logger.getLogger(RouteManager.class.getName());
@@ -23,6 +35,16 @@ public class RouteManager {
     private final List<String> locationNames;
     private final List<String> locationUbigeos;
     private final BlockageManager blockageManager;
+    private final RoutingIndexes indexes;
+    private final ContractionHierarchy contractionHierarchy;
+    private final WarehouseDistanceTable warehouseDistanceTable;
+    private final TimeDependentRouter timeDependentRouter;
+    private final TravelTimeOracle travelTimes;
+    // Cálculos en curso por par origen-destino; cada futuro se quita al completarse
+    private final ConcurrentHashMap<RouteRequest, CompletableFuture<List<RouteSegment>>> inFlight =
+            new ConcurrentHashMap<>();
+    private final Meter coalescedRequests = Main.metricRegistry.meter(
+            MetricRegistry.name(RouteManager.class, "coalescedRequests"));
 
     /**
      * Constructor de RouteManager.
@@ -32,70 +54,256 @@ public class RouteManager {
      * @param locationNames   Lista de nombres de ubicaciones.
      * @param locationUbigeos Lista de ubigeos de ubicaciones.
      * @param blockageManager Referencia a BlockageManager para obtener bloqueos activos.
+     * @param indexes         Índices de ruteo; BlockageManager sincroniza con los bloqueos activos los que
+     *                        dependen de ellos.
      */
     public RouteManager(RouteCache routeCache, Map<String, Integer> locationIndices,
                         List<String> locationNames, List<String> locationUbigeos,
-                        BlockageManager blockageManager) {
+                        BlockageManager blockageManager, RoutingIndexes indexes) {
         this.routeCache = routeCache;
         this.locationIndices = locationIndices;
         this.locationNames = locationNames;
         this.locationUbigeos = locationUbigeos;
         this.blockageManager = blockageManager;
+        this.indexes = indexes;
+        this.contractionHierarchy = indexes.getContractionHierarchy();
+        this.warehouseDistanceTable = indexes.getWarehouseDistanceTable();
+        this.timeDependentRouter = indexes.getTimeDependentRouter();
+        this.travelTimes = indexes.getTravelTimes();
     }
 
     /**
-     * Calcula rutas hacia almacenes para una lista de vehículos.
+     * Calcula rutas hacia almacenes para una lista de vehículos. Si los almacenes son los de la tabla de
+     * almacenes más cercanos, la elección es una consulta O(1) por vehículo; si no, se usan los tiempos de las
+     * rutas en caché o la matriz de tiempos vehículo × almacén. En ambos casos solo se calcula la ruta hacia
+     * el almacén elegido. Las rutas que cruzan una ventana de bloqueo futura se ajustan a la hora de salida.
      *
      * @param vehicles          Lista de vehículos a los que se les asignarán rutas.
      * @param warehousesUbigeos Lista de ubigeos de los almacenes principales.
+     * @param departureTime     Hora de salida de los vehículos.
      * @return Mapa de vehículos a sus respectivas rutas.
      */
-    public Map<Vehicle, List<RouteSegment>> calculateRoutesToWarehouses(List<Vehicle> vehicles,
-                                                                        List<String> warehousesUbigeos, long[][] timeMatrix) {
+    public Map<Vehicle, List<RouteSegment>> calculateRoutesToWarehouses(List<Vehicle> vehicles, List<String> warehousesUbigeos,
+                                                                        long[][] timeMatrix, LocalDateTime departureTime) {
+        Map<Vehicle, List<RouteSegment>> vehicleRoutes;
+        if (warehouseDistanceTable != null
+                && new HashSet<>(warehouseDistanceTable.getWarehouseUbigeos()).equals(new HashSet<>(warehousesUbigeos))) {
+            vehicleRoutes = calculateRoutesToNearestWarehouses(vehicles, timeMatrix);
+        } else {
+            vehicleRoutes = calculateRoutesToBestWarehouses(vehicles, warehousesUbigeos, timeMatrix);
+        }
+        if (timeDependentRouter != null) {
+            vehicleRoutes.replaceAll((vehicle, route) -> timeDependentRouter.adjustRoute(route, departureTime));
+        }
+        return vehicleRoutes;
+    }
+
+    /**
+     * Elige para cada vehículo el almacén de menor tiempo según las rutas en caché o la matriz vehículo × almacén.
+     */
+    private Map<Vehicle, List<RouteSegment>> calculateRoutesToBestWarehouses(List<Vehicle> vehicles,
+                                                                             List<String> warehousesUbigeos, long[][] timeMatrix) {
+
         Map<Vehicle, List<RouteSegment>> vehicleRoutes = new HashMap<>();
-        Set<RouteRequest> routesToCalculate = new HashSet<>();
+        Map<RouteRequest, List<Vehicle>> routesToCalculate = new HashMap<>();
+        long[][] estimatedTimes = calculateTravelTimeMatrix(
+                vehicles.stream().map(Vehicle::getCurrentLocationUbigeo).collect(Collectors.toList()),
+                warehousesUbigeos);
 
-        for (Vehicle vehicle : vehicles) {
+        for (int i = 0; i < vehicles.size(); i++) {
+            Vehicle vehicle = vehicles.get(i);
             String currentLocation = vehicle.getCurrentLocationUbigeo();
             Map<String, Long> routeTimes = new HashMap<>();
 
-            for (String warehouseUbigeo : warehousesUbigeos) {
+            for (int j = 0; j < warehousesUbigeos.size(); j++) {
+                String warehouseUbigeo = warehousesUbigeos.get(j);
                 if (!warehouseUbigeo.equals(currentLocation)) {
-                    List<RouteSegment> cachedRoute = routeCache.getRoute(currentLocation, warehouseUbigeo, blockageManager.getActiveBlockages());
+                    List<RouteSegment> cachedRoute = routeCache.getRoute(currentLocation, warehouseUbigeo);
                     if (cachedRoute != null) {
-                        long routeTime = calculateRouteTime(cachedRoute);
-                        routeTimes.put(warehouseUbigeo, routeTime);
-                    } else {
-                        routesToCalculate.add(new RouteRequest(currentLocation, warehouseUbigeo));
+                        routeTimes.put(warehouseUbigeo, calculateRouteTime(cachedRoute));
+                    } else if (estimatedTimes[i][j] != Long.MAX_VALUE) {
+                        routeTimes.put(warehouseUbigeo, estimatedTimes[i][j]);
                     }
                 }
             }
 
-            if (!routeTimes.isEmpty()) {
-                String bestDestination = findBestDestination(routeTimes);
-                List<RouteSegment> route = routeCache.getRoute(currentLocation, bestDestination, blockageManager.getActiveBlockages());
+            if (routeTimes.isEmpty()) {
+                continue;
+            }
+            String bestDestination = findBestDestination(routeTimes);
+            List<RouteSegment> route = routeCache.getRoute(currentLocation, bestDestination);
+            if (route != null) {
                 vehicleRoutes.put(vehicle, route);
+            } else if (!routeCache.isUnreachable(currentLocation, bestDestination)) {
+                routesToCalculate.computeIfAbsent(new RouteRequest(currentLocation, bestDestination),
+                        k -> new ArrayList<>()).add(vehicle);
             }
         }
 
-        if (!routesToCalculate.isEmpty()) {
-            Map<RouteRequest, List<RouteSegment>> calculatedRoutes = batchCalculateRoutes(routesToCalculate, timeMatrix);
-            for (Map.Entry<RouteRequest, List<RouteSegment>> entry : calculatedRoutes.entrySet()) {
-                RouteRequest request = entry.getKey();
-                List<RouteSegment> route = entry.getValue();
-                Vehicle vehicle = vehicles.stream()
-                        .filter(v -> v.getCurrentLocationUbigeo().equals(request.start))
-                        .findFirst()
-                        .orElse(null);
-                if (vehicle != null) {
-                    vehicleRoutes.put(vehicle, route);
-                }
+        calculatePendingRoutes(routesToCalculate, timeMatrix, vehicleRoutes);
+        return vehicleRoutes;
+    }
+
+    /**
+     * Asigna a cada vehículo la ruta hacia el almacén principal más cercano según la tabla precalculada.
+     * Si el vehículo ya está en un almacén principal, se le asigna el más cercano distinto del actual.
+     */
+    private Map<Vehicle, List<RouteSegment>> calculateRoutesToNearestWarehouses(List<Vehicle> vehicles, long[][] timeMatrix) {
+        Map<Vehicle, List<RouteSegment>> vehicleRoutes = new HashMap<>();
+        Map<RouteRequest, List<Vehicle>> routesToCalculate = new HashMap<>();
+
+        for (Vehicle vehicle : vehicles) {
+            String currentLocation = vehicle.getCurrentLocationUbigeo();
+            String nearestWarehouse = warehouseDistanceTable.getNearestWarehouse(currentLocation);
+            if (nearestWarehouse == null) {
+                logger.warning(String.format("No hay almacén principal alcanzable desde %s para el vehículo %s",
+                        currentLocation, vehicle.getCode()));
+                continue;
+            }
+            List<RouteSegment> route = routeCache.getRoute(currentLocation, nearestWarehouse);
+            if (route != null) {
+                vehicleRoutes.put(vehicle, route);
+            } else if (!routeCache.isUnreachable(currentLocation, nearestWarehouse)) {
+                routesToCalculate.computeIfAbsent(new RouteRequest(currentLocation, nearestWarehouse),
+                        k -> new ArrayList<>()).add(vehicle);
             }
         }
 
+        calculatePendingRoutes(routesToCalculate, timeMatrix, vehicleRoutes);
         return vehicleRoutes;
     }
 
+    /**
+     * Calcula en batch las rutas pendientes y las asigna a todos los vehículos que las solicitaron. Los pares que
+     * otro hilo ya está calculando no entran al batch: se espera su resultado.
+     */
+    private void calculatePendingRoutes(Map<RouteRequest, List<Vehicle>> routesToCalculate, long[][] timeMatrix,
+                                        Map<Vehicle, List<RouteSegment>> vehicleRoutes) {
+        if (routesToCalculate.isEmpty()) {
+            return;
+        }
+        Map<RouteRequest, CompletableFuture<List<RouteSegment>>> owned = new HashMap<>();
+        Map<RouteRequest, CompletableFuture<List<RouteSegment>>> awaited = new HashMap<>();
+        for (RouteRequest request : routesToCalculate.keySet()) {
+            CompletableFuture<List<RouteSegment>> mine = new CompletableFuture<>();
+            CompletableFuture<List<RouteSegment>> running = inFlight.putIfAbsent(request, mine);
+            if (running == null) {
+                owned.put(request, mine);
+            } else {
+                coalescedRequests.mark();
+                awaited.put(request, running);
+            }
+        }
+
+        Map<RouteRequest, List<RouteSegment>> calculatedRoutes = new HashMap<>();
+        if (!owned.isEmpty()) {
+            try {
+                calculatedRoutes.putAll(batchCalculateRoutes(owned.keySet(), timeMatrix));
+                // Sin ruta se completa con una lista vacía: quien espere el par nunca recibe null
+                owned.forEach((request, future) -> future.complete(
+                        calculatedRoutes.getOrDefault(request, Collections.emptyList())));
+            } catch (RuntimeException | Error e) {
+                owned.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            } finally {
+                owned.forEach(inFlight::remove);
+            }
+        }
+        if (!awaited.isEmpty()) {
+            logger.info(String.format("Esperando %d rutas que otro hilo ya está calculando", awaited.size()));
+            awaited.forEach((request, future) -> {
+                List<RouteSegment> route = future.join();
+                if (!route.isEmpty()) {
+                    calculatedRoutes.put(request, route);
+                }
+            });
+        }
+
+        for (Map.Entry<RouteRequest, List<RouteSegment>> entry : calculatedRoutes.entrySet()) {
+            for (Vehicle vehicle : routesToCalculate.get(entry.getKey())) {
+                vehicleRoutes.put(vehicle, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Calcula la ruta del par una sola vez aunque varios hilos la pidan a la vez: el primero ejecuta solver y
+     * los demás esperan su resultado.
+     */
+    private List<RouteSegment> computeOnce(String originUbigeo, String destinationUbigeo,
+                                           Supplier<List<RouteSegment>> solver) {
+        RouteRequest request = new RouteRequest(originUbigeo, destinationUbigeo);
+        CompletableFuture<List<RouteSegment>> mine = new CompletableFuture<>();
+        CompletableFuture<List<RouteSegment>> running = inFlight.putIfAbsent(request, mine);
+        if (running != null) {
+            coalescedRequests.mark();
+            logger.info(String.format("Ruta %s -> %s ya en cálculo por otro hilo; se espera su resultado",
+                    originUbigeo, destinationUbigeo));
+            return running.join();
+        }
+        try {
+            List<RouteSegment> route = solver.get();
+            if (route == null) {
+                route = Collections.emptyList();
+            }
+            mine.complete(route);
+            return route;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(request, mine);
+        }
+    }
+
+    /**
+     * Calcula la matriz de tiempos mínimos entre orígenes y destinos consultando el oráculo de tiempos. Con la
+     * tabla de todos los pares o, en grafos grandes, con el overlay, los tiempos son exactos y consideran los
+     * bloqueos activos; a falta de ambos se usa el modo muchos a muchos de Contraction Hierarchies, cuyos tiempos no
+     * consideran bloqueos y son por tanto cotas inferiores.
+     *
+     * @param originUbigeos      Ubigeos de origen.
+     * @param destinationUbigeos Ubigeos de destino.
+     * @return Matriz result[i][j] en minutos, con Long.MAX_VALUE si no hay camino o el ubigeo no existe.
+     */
+    public long[][] calculateTravelTimeMatrix(List<String> originUbigeos, List<String> destinationUbigeos) {
+        int[] sources = toIndices(originUbigeos);
+        int[] targets = toIndices(destinationUbigeos);
+        long[][] times = new long[sources.length][targets.length];
+        for (long[] row : times) {
+            Arrays.fill(row, Long.MAX_VALUE);
+        }
+
+        if (travelTimes != null) {
+            for (int i = 0; i < sources.length; i++) {
+                for (int j = 0; j < targets.length; j++) {
+                    if (sources[i] >= 0 && targets[j] >= 0) {
+                        times[i][j] = travelTimes.travelTime(sources[i], targets[j]);
+                    }
+                }
+            }
+        } else if (contractionHierarchy != null) {
+            int[] validSources = Arrays.stream(sources).filter(index -> index >= 0).toArray();
+            int[] validTargets = Arrays.stream(targets).filter(index -> index >= 0).toArray();
+            long[][] hierarchyTimes = contractionHierarchy.manyToMany(validSources, validTargets);
+            for (int i = 0, vi = 0; i < sources.length; i++) {
+                if (sources[i] < 0) continue;
+                for (int j = 0, vj = 0; j < targets.length; j++) {
+                    if (targets[j] < 0) continue;
+                    times[i][j] = hierarchyTimes[vi][vj++];
+                }
+                vi++;
+            }
+        }
+        return times;
+    }
+
+    private int[] toIndices(List<String> ubigeos) {
+        return ubigeos.stream()
+                .mapToInt(ubigeo -> locationIndices.getOrDefault(ubigeo, -1))
+                .toArray();
+    }
+
     /**
      * Calcula rutas en batch utilizando Google OR-Tools.
      *
@@ -104,6 +312,10 @@ public class RouteManager {
      */
     private Map<RouteRequest, List<RouteSegment>> batchCalculateRoutes(Set<RouteRequest> routesToCalculate,
                                                                        long[][] timeMatrix) {
+        // Época leída antes de resolver: los pares sin camino se registran con los bloqueos usados
+        long blockageEpoch = routeCache.getBlockageEpoch();
+        // Solicitudes aceptadas, en el mismo orden que starts/ends y que las rutas devueltas
+        List<RouteRequest> accepted = new ArrayList<>();
         List<Integer> starts = new ArrayList<>();
         List<Integer> ends = new ArrayList<>();
 
@@ -111,6 +323,7 @@ public class RouteManager {
             Integer startIndex = locationIndices.get(request.start);
             Integer endIndex = locationIndices.get(request.end);
             if (startIndex != null && endIndex != null) {
+                accepted.add(request);
                 starts.add(startIndex);
                 ends.add(endIndex);
             } else {
@@ -119,7 +332,7 @@ public class RouteManager {
             }
         }
 
-        if (starts.isEmpty() || ends.isEmpty()) {
+        if (accepted.isEmpty()) {
             logger.warning("No hay rutas válidas para calcular.");
             return Collections.emptyMap();
         }
@@ -128,6 +341,8 @@ public class RouteManager {
                 starts.stream().mapToInt(Integer::intValue).toArray(),
                 ends.stream().mapToInt(Integer::intValue).toArray(),
                 locationNames, locationUbigeos);
+        // Solo una búsqueda de caminos mínimos prueba que el par no tiene camino; OR-Tools puede no hallar solución
+        boolean exactSearch = data.hasIndependentPairs();
 
         List<List<RouteSegment>> calculatedRoutes = calculateRoutes(data);
 
@@ -137,33 +352,46 @@ public class RouteManager {
         }
 
         Map<RouteRequest, List<RouteSegment>> result = new HashMap<>();
-        int index = 0;
-        for (RouteRequest request : routesToCalculate) {
-            if (index < calculatedRoutes.size()) {
-                result.put(request, calculatedRoutes.get(index));
+        for (int i = 0; i < accepted.size(); i++) {
+            RouteRequest request = accepted.get(i);
+            List<RouteSegment> route = i < calculatedRoutes.size() ? calculatedRoutes.get(i) : null;
+            if (route != null && !route.isEmpty()) {
+                result.put(request, route);
             } else {
                 logger.warning(String.format("No hay ruta calculada para la solicitud %s -> %s", request.start, request.end));
+                if (exactSearch && route != null && !request.start.equals(request.end)) {
+                    routeCache.markUnreachable(request.start, request.end, blockageEpoch);
+                }
             }
-            index++;
         }
 
         return result;
     }
 
     /**
-     * Calcula rutas utilizando Google OR-Tools.
+     * Calcula rutas. Si el modelo solo tiene pares origen→destino independientes se resuelven con
+     * Dijkstra; en otro caso se utiliza Google OR-Tools.
      *
      * @param data Modelo de datos para la optimización de rutas.
      * @return Lista de rutas calculadas, cada una representada como una lista de RouteSegment.
      */
     public List<List<RouteSegment>> calculateRoutes(DataModel data) {
+        if (data.hasIndependentPairs()) {
+            try (Timer.Context ignored = timer("calculateRoutes", "shortestPaths").time()) {
+                return ShortestPathEngine.solveIndependentPairs(data, indexes);
+            }
+        }
+
         RoutingIndexManager manager = createRoutingIndexManager(data);
         RoutingModel routing = createRoutingModel(manager, data);
         RoutingSearchParameters searchParameters = createSearchParameters();
 
         logger.info("Iniciando la resolución del modelo de rutas.");
+        Timer.Context solveTimer = timer("calculateRoutes", "orTools").time();
         Assignment solution = routing.solveWithParameters(searchParameters);
-        logger.info("Solución de rutas obtenida.");
+        long elapsedMicros = solveTimer.stop() / 1_000;
+        logger.info(String.format("OR-Tools: solución de rutas obtenida en %d µs (%.1f µs por consulta)",
+                elapsedMicros, (double) elapsedMicros / Math.max(1, data.vehicleNumber)));
 
         if (solution != null) {
             return extractCalculatedRoutes(manager, data, routing, solution);
@@ -174,13 +402,16 @@ public class RouteManager {
     }
 
     /**
-     * Calcula una ruta específica para una asignación de vehículo y orden.
+     * Calcula una ruta específica para una asignación de vehículo y orden. Si la ruta cruza una ventana de
+     * bloqueo futura se reemplaza por la ruta dependiente del tiempo.
      *
-     * @param vehicle El vehículo a asignar la ruta.
-     * @param order   La orden asociada a la ruta.
+     * @param vehicle       El vehículo a asignar la ruta.
+     * @param order         La orden asociada a la ruta.
+     * @param departureTime Hora de salida del vehículo.
      * @return Lista de RouteSegment representando la ruta calculada.
      */
-    public List<RouteSegment> calculateRouteForAssignment(Vehicle vehicle, Order order, long[][] timeMatrix) {
+    public List<RouteSegment> calculateRouteForAssignment(Vehicle vehicle, Order order, long[][] timeMatrix,
+                                                          LocalDateTime departureTime) {
         String originUbigeo = vehicle.getCurrentLocationUbigeo();
         String destinationUbigeo = order.getDestinationUbigeo();
 
@@ -189,14 +420,54 @@ public class RouteManager {
             return Collections.emptyList();
         }
 
-        List<RouteSegment> cachedRoute = routeCache.getRoute(originUbigeo, destinationUbigeo, blockageManager.getActiveBlockages());
-        if (cachedRoute != null) {
-            return cachedRoute;
-        } else {
-            RouteRequest request = new RouteRequest(originUbigeo, destinationUbigeo);
-            Map<RouteRequest, List<RouteSegment>> calculatedRoutes = batchCalculateRoutes(Collections.singleton(request), timeMatrix);
-            return calculatedRoutes.getOrDefault(request, Collections.emptyList());
+        List<RouteSegment> route = routeCache.getRoute(originUbigeo, destinationUbigeo);
+        if (route == null) {
+            route = calculateSingleRoute(originUbigeo, destinationUbigeo, timeMatrix);
+        }
+        // La caché no conoce la hora de salida: la ruta ajustada se asigna al vehículo pero no se almacena
+        return timeDependentRouter != null ? timeDependentRouter.adjustRoute(route, departureTime) : route;
+    }
+
+    /**
+     * Calcula una ruta suelta (fallo de caché, reruteo tras una avería) con Dijkstra bidireccional sobre el
+     * grafo CSR, salvo que la tabla o el índice ya den un camino abierto.
+     *
+     * @return Lista de RouteSegment, vacía si no hay camino o si algún ubigeo es desconocido. Los pares sin
+     * camino se recuerdan en la caché hasta que se desbloquee algún tramo. Si otro hilo ya está calculando el
+     * mismo par, se espera su resultado.
+     */
+    public List<RouteSegment> calculateSingleRoute(String originUbigeo, String destinationUbigeo, long[][] timeMatrix) {
+        return computeOnce(originUbigeo, destinationUbigeo,
+                () -> solveSingleRoute(originUbigeo, destinationUbigeo, timeMatrix));
+    }
+
+    private List<RouteSegment> solveSingleRoute(String originUbigeo, String destinationUbigeo, long[][] timeMatrix) {
+        Integer startIndex = locationIndices.get(originUbigeo);
+        Integer endIndex = locationIndices.get(destinationUbigeo);
+        if (startIndex == null || endIndex == null) {
+            logger.warning(String.format("Ubigeo de inicio o fin no encontrado en locationIndices: %s -> %s",
+                    originUbigeo, destinationUbigeo));
+            return Collections.emptyList();
         }
+        if (routeCache.isUnreachable(originUbigeo, destinationUbigeo)) {
+            logger.info(String.format("Sin ruta de %s a %s con los bloqueos actuales; no se vuelve a calcular",
+                    originUbigeo, destinationUbigeo));
+            return Collections.emptyList();
+        }
+        long blockageEpoch = routeCache.getBlockageEpoch();
+        ShortestPathEngine engine = new ShortestPathEngine(timeMatrix, locationNames, locationUbigeos, indexes);
+        Timer.Context routeTimer = timer("calculateSingleRoute").time();
+        List<RouteSegment> route = engine.findRouteBidirectional(startIndex, endIndex);
+        logger.info(String.format("Ruta suelta %s -> %s calculada en %d µs (%d nodos asentados)",
+                originUbigeo, destinationUbigeo, routeTimer.stop() / 1_000, engine.getLastSettledCount()));
+        if (route.isEmpty()) {
+            routeCache.markUnreachable(originUbigeo, destinationUbigeo, blockageEpoch);
+        }
+        return route;
+    }
+
+    private static Timer timer(String... names) {
+        return Main.metricRegistry.timer(MetricRegistry.name(RouteManager.class, names));
     }
 
     /**
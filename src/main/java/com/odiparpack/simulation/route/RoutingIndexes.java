@@ -0,0 +1,165 @@
+package com.odiparpack.simulation.route;
+
+/**
+ * Índices de ruteo construidos sobre el mismo grafo CSR: se arman una vez con {@link #builder()} y se pasan
+ * completos a ShortestPathEngine, RouteManager y a quien sincroniza los bloqueos, en lugar de un parámetro por
+ * índice.
+ * <p>
+ * Todos pueden ser null: quien consulta usa el siguiente disponible (por ejemplo, AllPairsTable no se construye
+ * en redes grandes y entonces los tiempos entre pares salen del overlay).
+ */
+public final class RoutingIndexes {
+    private static final RoutingIndexes NONE = new Builder().build();
+
+    private final RoadGraph roadGraph;
+    private final AllPairsTable allPairsTable;
+    private final ContractionHierarchy contractionHierarchy;
+    private final LandmarkTable landmarkTable;
+    private final OverlayGraph overlayGraph;
+    private final WarehouseDistanceTable warehouseDistanceTable;
+    private final TimeDependentRouter timeDependentRouter;
+
+    private RoutingIndexes(Builder builder) {
+        this.roadGraph = builder.roadGraph;
+        this.allPairsTable = builder.allPairsTable;
+        this.contractionHierarchy = builder.contractionHierarchy;
+        this.landmarkTable = builder.landmarkTable;
+        this.overlayGraph = builder.overlayGraph;
+        this.warehouseDistanceTable = builder.warehouseDistanceTable;
+        this.timeDependentRouter = builder.timeDependentRouter;
+    }
+
+    /**
+     * @return Sin índices: las búsquedas recorren solo la matriz de tiempos.
+     */
+    public static RoutingIndexes none() {
+        return NONE;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return Builder con los mismos índices, para completar los que faltan.
+     */
+    public Builder toBuilder() {
+        return new Builder()
+                .roadGraph(roadGraph)
+                .allPairsTable(allPairsTable)
+                .contractionHierarchy(contractionHierarchy)
+                .landmarkTable(landmarkTable)
+                .overlayGraph(overlayGraph)
+                .warehouseDistanceTable(warehouseDistanceTable)
+                .timeDependentRouter(timeDependentRouter);
+    }
+
+    /**
+     * @return Grafo de carreteras en formato CSR.
+     */
+    public RoadGraph getRoadGraph() {
+        return roadGraph;
+    }
+
+    /**
+     * @return Tabla de todos los pares, reparada con los bloqueos activos.
+     */
+    public AllPairsTable getAllPairsTable() {
+        return allPairsTable;
+    }
+
+    /**
+     * @return Índice de Contraction Hierarchies del grafo sin bloqueos.
+     */
+    public ContractionHierarchy getContractionHierarchy() {
+        return contractionHierarchy;
+    }
+
+    /**
+     * @return Cotas ALT del grafo sin bloqueos para las búsquedas A*.
+     */
+    public LandmarkTable getLandmarkTable() {
+        return landmarkTable;
+    }
+
+    /**
+     * @return Overlay multinivel sincronizado con los bloqueos activos.
+     */
+    public OverlayGraph getOverlayGraph() {
+        return overlayGraph;
+    }
+
+    /**
+     * @return Almacén principal más cercano por nodo, sincronizado con los bloqueos activos.
+     */
+    public WarehouseDistanceTable getWarehouseDistanceTable() {
+        return warehouseDistanceTable;
+    }
+
+    /**
+     * @return Router que considera las ventanas de bloqueo futuras.
+     */
+    public TimeDependentRouter getTimeDependentRouter() {
+        return timeDependentRouter;
+    }
+
+    /**
+     * @return Tiempos mínimos entre pares con los bloqueos activos: la tabla de todos los pares o, si no se
+     * construyó (grafos grandes), el overlay. Null si no hay ninguno de los dos.
+     */
+    public TravelTimeOracle getTravelTimes() {
+        return allPairsTable != null ? allPairsTable : overlayGraph;
+    }
+
+    public static final class Builder {
+        private RoadGraph roadGraph;
+        private AllPairsTable allPairsTable;
+        private ContractionHierarchy contractionHierarchy;
+        private LandmarkTable landmarkTable;
+        private OverlayGraph overlayGraph;
+        private WarehouseDistanceTable warehouseDistanceTable;
+        private TimeDependentRouter timeDependentRouter;
+
+        private Builder() {
+        }
+
+        public Builder roadGraph(RoadGraph roadGraph) {
+            this.roadGraph = roadGraph;
+            return this;
+        }
+
+        public Builder allPairsTable(AllPairsTable allPairsTable) {
+            this.allPairsTable = allPairsTable;
+            return this;
+        }
+
+        public Builder contractionHierarchy(ContractionHierarchy contractionHierarchy) {
+            this.contractionHierarchy = contractionHierarchy;
+            return this;
+        }
+
+        public Builder landmarkTable(LandmarkTable landmarkTable) {
+            this.landmarkTable = landmarkTable;
+            return this;
+        }
+
+        public Builder overlayGraph(OverlayGraph overlayGraph) {
+            this.overlayGraph = overlayGraph;
+            return this;
+        }
+
+        public Builder warehouseDistanceTable(WarehouseDistanceTable warehouseDistanceTable) {
+            this.warehouseDistanceTable = warehouseDistanceTable;
+            return this;
+        }
+
+        public Builder timeDependentRouter(TimeDependentRouter timeDependentRouter) {
+            this.timeDependentRouter = timeDependentRouter;
+            return this;
+        }
+
+        public RoutingIndexes build() {
+            return new RoutingIndexes(this);
+        }
+    }
+}
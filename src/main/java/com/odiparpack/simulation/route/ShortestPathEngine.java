@@ -0,0 +1,376 @@
+package com.odiparpack.simulation.route;
+
+import com.odiparpack.DataModel;
+import com.odiparpack.models.RouteSegment;
+import com.odiparpack.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Motor de caminos mínimos punto a punto (Dijkstra o A* con heap binario) sobre los arcos del grafo CSR, con los
+ * tiempos y bloqueos de la matriz de tiempos actual. Sustituye a OR-Tools cuando solo se necesita el camino más
+ * corto de cada origen a su destino.
+ * <p>
+ * Cuando la tabla o el índice no dan un camino válido y hay overlay multinivel, se consulta el overlay, cuya
+ * métrica ya incluye los bloqueos activos. Si no, se usa A* con una cota Haversine derivada de las
+ * coordenadas de cada ubicación y, si hay tabla de landmarks, el máximo entre esa cota y la cota ALT, mucho más
+ * ajustada en la sierra; si no hay ninguna de las dos se recurre a Dijkstra. Para consultas sueltas,
+ * que no amortizan la calibración de la heurística, se puede usar Dijkstra bidireccional sobre el grafo CSR.
+ */
+public class ShortestPathEngine {
+    private static final Logger logger = Logger.getLogger(ShortestPathEngine.class.getName());
+
+    private final long[][] timeMatrix;
+    private final List<String> locationNames;
+    private final List<String> locationUbigeos;
+    private final long[] dist;
+    private final int[] pred;
+    private final long[] estimates; // Heurística por nodo para el destino actual (-1 si aún no se calculó)
+    private final IndexedMinHeap heap;
+    private final AllPairsTable baseTable;
+    private final ContractionHierarchy hierarchy;
+    private final RoadGraph roadGraph;
+    private final LandmarkTable landmarks;
+    private final OverlayGraph overlay;
+    private GeoHeuristic heuristic;
+    private boolean heuristicResolved;
+    private int lastSettledCount;
+    private long totalSettledCount;
+    private int searchCount;
+
+    /**
+     * Constructor de ShortestPathEngine sin índices precalculados.
+     *
+     * @param timeMatrix      Matriz de tiempos (minutos) con Long.MAX_VALUE en los tramos inexistentes o bloqueados.
+     * @param locationNames   Lista de nombres de ubicaciones.
+     * @param locationUbigeos Lista de ubigeos de ubicaciones.
+     */
+    public ShortestPathEngine(long[][] timeMatrix, List<String> locationNames, List<String> locationUbigeos) {
+        this(timeMatrix, locationNames, locationUbigeos, RoutingIndexes.none());
+    }
+
+    /**
+     * Constructor de ShortestPathEngine con índices precalculados. Se usan la tabla de todos los pares, el índice
+     * de Contraction Hierarchies, el overlay, las cotas ALT y el grafo CSR; cualquiera puede faltar.
+     *
+     * @param timeMatrix      Matriz de tiempos actual; solo puede diferir del grafo base por tramos bloqueados.
+     * @param locationNames   Lista de nombres de ubicaciones.
+     * @param locationUbigeos Lista de ubigeos de ubicaciones.
+     * @param indexes         Índices del grafo; la tabla y el overlay, sincronizados con los bloqueos de timeMatrix.
+     */
+    public ShortestPathEngine(long[][] timeMatrix, List<String> locationNames, List<String> locationUbigeos,
+                              RoutingIndexes indexes) {
+        int n = timeMatrix.length;
+        this.baseTable = indexes.getAllPairsTable();
+        this.hierarchy = indexes.getContractionHierarchy();
+        this.roadGraph = indexes.getRoadGraph();
+        this.landmarks = indexes.getLandmarkTable();
+        this.overlay = indexes.getOverlayGraph();
+        this.timeMatrix = timeMatrix;
+        this.locationNames = locationNames;
+        this.locationUbigeos = locationUbigeos;
+        this.dist = new long[n];
+        this.pred = new int[n];
+        this.estimates = new long[n];
+        this.heap = new IndexedMinHeap(n);
+    }
+
+    /**
+     * Resuelve de forma independiente cada par origen→destino del modelo y registra la latencia por consulta.
+     *
+     * @param data Modelo de datos con pares independientes.
+     * @return Lista de rutas en el mismo orden que data.starts/data.ends (vacía si el par no es alcanzable).
+     */
+    public static List<List<RouteSegment>> solveIndependentPairs(DataModel data) {
+        return solveIndependentPairs(data, RoutingIndexes.none());
+    }
+
+    /**
+     * Igual que {@link #solveIndependentPairs(DataModel)}, pero consultando primero los índices precalculados
+     * (ver {@link #shortestPath}).
+     *
+     * @param data    Modelo de datos con pares independientes.
+     * @param indexes Índices del grafo; la tabla y el overlay, sincronizados con los bloqueos de data.timeMatrix.
+     * @return Lista de rutas en el mismo orden que data.starts/data.ends (vacía si el par no es alcanzable).
+     */
+    public static List<List<RouteSegment>> solveIndependentPairs(DataModel data, RoutingIndexes indexes) {
+        ShortestPathEngine engine = new ShortestPathEngine(data.timeMatrix, data.locationNames, data.locationUbigeos,
+                indexes);
+        List<List<RouteSegment>> routes = new ArrayList<>();
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < data.vehicleNumber; i++) {
+            routes.add(engine.findRoute(data.starts[i], data.ends[i]));
+        }
+        long elapsedMicros = (System.nanoTime() - startNanos) / 1_000;
+
+        logger.info(String.format("Dijkstra: %d rutas calculadas en %d µs (%.1f µs por consulta)",
+                data.vehicleNumber, elapsedMicros,
+                data.vehicleNumber == 0 ? 0.0 : (double) elapsedMicros / data.vehicleNumber));
+        if (engine.searchCount > 0) {
+            logger.info(String.format("%d búsquedas sobre la matriz, %.1f nodos asentados en promedio de %d",
+                    engine.searchCount, (double) engine.totalSettledCount / engine.searchCount, data.timeMatrix.length));
+        }
+        return routes;
+    }
+
+    /**
+     * Calcula la ruta más corta entre dos nodos.
+     *
+     * @param start Índice del nodo origen.
+     * @param end   Índice del nodo destino.
+     * @return Lista de RouteSegment, vacía si no hay camino o si origen y destino coinciden.
+     */
+    public List<RouteSegment> findRoute(int start, int end) {
+        int[] path = shortestPath(start, end);
+        if (path == null || path.length < 2) {
+            if (path == null) {
+                logger.warning(String.format("No existe camino desde %s hasta %s.",
+                        locationUbigeos.get(start), locationUbigeos.get(end)));
+            }
+            return Collections.emptyList();
+        }
+        return toRouteSegments(path);
+    }
+
+    /**
+     * Obtiene el camino de la tabla o del índice si siguen siendo válidos; si no, el del overlay y, sin overlay,
+     * ejecuta A* (o Dijkstra si no hay heurística) desde start y se detiene al asentar end.
+     *
+     * @return Secuencia de nodos del camino (incluye extremos) o null si end no es alcanzable.
+     */
+    public int[] shortestPath(int start, int end) {
+        if (start == end) {
+            return new int[]{start};
+        }
+        int[] basePath = indexedPath(start, end);
+        if (basePath != null) {
+            return basePath;
+        }
+        int[] overlayPath = overlayPath(start, end);
+        if (overlayPath != null) {
+            return overlayPath;
+        }
+        return search(start, end, true);
+    }
+
+    /**
+     * Calcula la ruta de una consulta suelta: el camino de la tabla o del índice si sigue abierto; si no, el del
+     * overlay o Dijkstra bidireccional sobre el grafo CSR (o A* si no hay grafo).
+     *
+     * @return Lista de RouteSegment, vacía si no hay camino o si origen y destino coinciden.
+     */
+    public List<RouteSegment> findRouteBidirectional(int start, int end) {
+        if (roadGraph == null) {
+            return findRoute(start, end);
+        }
+        int[] path = start == end ? new int[]{start} : indexedPath(start, end);
+        if (path == null) {
+            path = overlayPath(start, end);
+        }
+        if (path == null) {
+            BidirectionalDijkstra search = new BidirectionalDijkstra(roadGraph, timeMatrix);
+            path = search.shortestPath(start, end);
+            lastSettledCount = search.getLastSettledCount();
+        }
+        if (path == null || path.length < 2) {
+            if (path == null) {
+                logger.warning(String.format("No existe camino desde %s hasta %s.",
+                        locationUbigeos.get(start), locationUbigeos.get(end)));
+            }
+            return Collections.emptyList();
+        }
+        return toRouteSegments(path);
+    }
+
+    /**
+     * @return Camino de la tabla o del índice si todos sus tramos siguen abiertos; null en otro caso.
+     */
+    private int[] indexedPath(int start, int end) {
+        int[] basePath = baseTable != null ? baseTable.path(start, end) : null;
+        if (basePath == null && hierarchy != null) {
+            basePath = hierarchy.shortestPath(start, end);
+        }
+        return isOpen(basePath) ? basePath : null;
+    }
+
+    /**
+     * @return Camino del overlay si hay overlay y todos sus tramos están abiertos en la matriz actual; null en
+     * otro caso (sin camino, o el overlay aún no refleja un bloqueo reciente).
+     */
+    private int[] overlayPath(int start, int end) {
+        if (overlay == null) {
+            return null;
+        }
+        lastSettledCount = 0;
+        int[] path = overlay.shortestPath(start, end);
+        return isOpen(path) ? path : null;
+    }
+
+    /**
+     * Dijkstra sobre la matriz actual, sin consultar la tabla ni el índice.
+     *
+     * @return Secuencia de nodos del camino (incluye extremos) o null si end no es alcanzable.
+     */
+    public int[] dijkstra(int start, int end) {
+        return search(start, end, false);
+    }
+
+    /**
+     * A* sobre la matriz actual con la cota Haversine (y la ALT si hay landmarks), sin consultar la tabla ni el
+     * índice. Si no hay ninguna cota disponible equivale a Dijkstra.
+     *
+     * @return Secuencia de nodos del camino (incluye extremos) o null si end no es alcanzable.
+     */
+    public int[] aStar(int start, int end) {
+        return search(start, end, true);
+    }
+
+    /**
+     * @return Nodos asentados por la última búsqueda sobre la matriz (0 si el camino vino de la tabla o del índice).
+     */
+    public int getLastSettledCount() {
+        return lastSettledCount;
+    }
+
+    /**
+     * Búsqueda con heap ordenado por dist + h. Como la heurística es consistente, cada nodo se asienta una
+     * sola vez y al sacar end del heap su distancia es definitiva; sin goalDirected es Dijkstra.
+     * <p>
+     * Con grafo CSR cada nodo asentado recorre solo sus arcos de salida, O((V + E) log V) en total; sin grafo se
+     * recorre la fila completa de la matriz, O(V²).
+     */
+    private int[] search(int start, int end, boolean goalDirected) {
+        GeoHeuristic heuristic = goalDirected ? getHeuristic() : null;
+        LandmarkTable landmarks = goalDirected ? this.landmarks : null;
+        lastSettledCount = 0;
+        if (start == end) {
+            return new int[]{start};
+        }
+        int n = timeMatrix.length;
+        Arrays.fill(dist, Long.MAX_VALUE);
+        Arrays.fill(pred, -1);
+        Arrays.fill(estimates, -1);
+        heap.clear();
+
+        dist[start] = 0;
+        heap.insertOrDecrease(start, estimate(heuristic, landmarks, start, end));
+
+        int settled = 0;
+        int[] path = null;
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled++;
+            if (u == end) {
+                path = buildPath(start, end);
+                break;
+            }
+            long du = dist[u];
+            long[] row = timeMatrix[u];
+            if (roadGraph != null) {
+                // Solo los tramos que salen de u; la matriz actual indica cuáles están bloqueados
+                for (int arc = roadGraph.firstArc(u), arcEnd = roadGraph.endArc(u); arc < arcEnd; arc++) {
+                    int v = roadGraph.target(arc);
+                    relax(u, v, du, row[v], heuristic, landmarks, end);
+                }
+            } else {
+                for (int v = 0; v < n; v++) {
+                    if (v != u) {
+                        relax(u, v, du, row[v], heuristic, landmarks, end);
+                    }
+                }
+            }
+        }
+
+        lastSettledCount = settled;
+        totalSettledCount += settled;
+        searchCount++;
+        return path;
+    }
+
+    private void relax(int u, int v, long du, long w, GeoHeuristic heuristic, LandmarkTable landmarks, int end) {
+        if (w == Long.MAX_VALUE) return; // tramo inexistente o bloqueado
+        long candidate = du + w;
+        if (candidate < dist[v]) {
+            dist[v] = candidate;
+            pred[v] = u;
+            heap.insertOrDecrease(v, candidate + estimate(heuristic, landmarks, v, end));
+        }
+    }
+
+    /**
+     * El máximo de dos cotas consistentes sigue siendo consistente.
+     */
+    private long estimate(GeoHeuristic heuristic, LandmarkTable landmarks, int node, int end) {
+        if (heuristic == null && landmarks == null) {
+            return 0;
+        }
+        if (estimates[node] < 0) {
+            long geo = heuristic != null ? heuristic.estimate(node, end) : 0;
+            long alt = landmarks != null ? landmarks.lowerBound(node, end) : 0;
+            estimates[node] = Math.max(geo, alt);
+        }
+        return estimates[node];
+    }
+
+    private GeoHeuristic getHeuristic() {
+        if (!heuristicResolved) {
+            heuristic = GeoHeuristic.create(timeMatrix, locationUbigeos);
+            heuristicResolved = true;
+        }
+        return heuristic;
+    }
+
+    /**
+     * Indica si ninguno de los tramos del camino está bloqueado en la matriz actual.
+     * Como los bloqueos solo aumentan costos, un camino mínimo del grafo base con todos sus tramos abiertos
+     * sigue siendo mínimo; si la tabla aún no refleja un bloqueo reciente, o si el índice de Contraction
+     * Hierarchies (que no conoce bloqueos) pasa por un tramo cerrado, se busca sobre la matriz.
+     */
+    private boolean isOpen(int[] path) {
+        if (path == null) {
+            return false;
+        }
+        for (int i = 0; i < path.length - 1; i++) {
+            if (timeMatrix[path[i]][path[i + 1]] == Long.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int[] buildPath(int start, int end) {
+        int length = 1;
+        for (int v = end; v != start; v = pred[v]) {
+            length++;
+        }
+        int[] path = new int[length];
+        int i = length - 1;
+        for (int v = end; v != start; v = pred[v]) {
+            path[i--] = v;
+        }
+        path[0] = start;
+        return path;
+    }
+
+    private List<RouteSegment> toRouteSegments(int[] path) {
+        List<RouteSegment> route = new ArrayList<>(path.length - 1);
+        for (int i = 0; i < path.length - 1; i++) {
+            int fromNode = path[i];
+            int toNode = path[i + 1];
+
+            String fromUbigeo = locationUbigeos.get(fromNode);
+            String toUbigeo = locationUbigeos.get(toNode);
+            long durationMinutes = timeMatrix[fromNode][toNode];
+            double distance = Utils.calculateDistanceFromUbigeos(fromUbigeo, toUbigeo);
+
+            route.add(new RouteSegment(locationNames.get(fromNode) + " to " + locationNames.get(toNode),
+                    fromUbigeo, toUbigeo, distance, durationMinutes));
+        }
+        return route;
+    }
+}
@@ -0,0 +1,242 @@
+package com.odiparpack.simulation.route;
+
+import com.odiparpack.models.Blockage;
+import com.odiparpack.models.RouteSegment;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Caminos mínimos dependientes del tiempo que respetan las ventanas de bloqueo futuras.
+ * <p>
+ * Para cada tramo se guardan sus intervalos bloqueados [inicio, fin) en minutos, fusionados y ordenados a partir
+ * de la lista de bloqueos ordenada por inicio. Un tramo solo puede tomarse si está abierto en el instante en que
+ * el vehículo llega a él; si está bloqueado se espera en el nodo hasta que se abra. La salida más temprana por un
+ * tramo no decrece con la hora de llegada (propiedad FIFO), así que basta un Dijkstra sobre tiempos de llegada,
+ * con una búsqueda binaria extra por relajación. Los vecinos se recorren en el grafo CSR compartido.
+ */
+public class TimeDependentRouter {
+    private static final Logger logger = Logger.getLogger(TimeDependentRouter.class.getName());
+
+    private final int n;
+    private final RoadGraph graph;
+    private final Map<String, Integer> locationIndices;
+    private final List<String> locationNames;
+    private final long[][] blockedIntervals; // por arco del grafo: [inicio0, fin0, inicio1, fin1, ...] o null
+    private final int blockedEdgeCount;
+
+    private TimeDependentRouter(RoadGraph graph, long[][] blockedIntervals, int blockedEdgeCount,
+                                List<String> locationNames) {
+        this.n = graph.nodeCount();
+        this.graph = graph;
+        this.blockedIntervals = blockedIntervals;
+        this.blockedEdgeCount = blockedEdgeCount;
+        this.locationIndices = graph.getLocationIndices();
+        this.locationNames = locationNames;
+    }
+
+    /**
+     * Construye los intervalos bloqueados de cada tramo. Los bloqueos se consideran bidireccionales.
+     *
+     * @param graph         Grafo de carreteras en formato CSR, sin bloqueos.
+     * @param blockages     Todos los bloqueos de la simulación, activos o futuros.
+     * @param locationNames Lista de nombres de ubicaciones en el orden de los nodos del grafo.
+     * @return Router listo para consultas.
+     */
+    public static TimeDependentRouter build(RoadGraph graph, List<Blockage> blockages, List<String> locationNames) {
+        int n = graph.nodeCount();
+        Map<String, Integer> locationIndices = graph.getLocationIndices();
+        List<Blockage> sorted = new ArrayList<>(blockages);
+        sorted.sort(Comparator.comparing(Blockage::getStartTime));
+
+        // Al recorrer los bloqueos por inicio, cada intervalo se fusiona con el último del tramo si se solapan
+        Map<Integer, List<long[]>> intervalsByEdge = new HashMap<>();
+        for (Blockage blockage : sorted) {
+            Integer fromIndex = locationIndices.get(blockage.getOriginUbigeo());
+            Integer toIndex = locationIndices.get(blockage.getDestinationUbigeo());
+            if (fromIndex == null || toIndex == null) {
+                logger.warning("Índices de ubicación no encontrados para bloqueo: " + blockage);
+                continue;
+            }
+            int forward = graph.findArc(fromIndex, toIndex);
+            int backward = graph.findArc(toIndex, fromIndex);
+            long start = toMinutes(blockage.getStartTime());
+            long end = toMinutes(blockage.getEndTime());
+            if (forward < 0 || end <= start) continue;
+            addInterval(intervalsByEdge, forward, start, end);
+            addInterval(intervalsByEdge, backward, start, end);
+        }
+
+        long[][] blockedIntervals = new long[graph.arcCount()][];
+        for (Map.Entry<Integer, List<long[]>> entry : intervalsByEdge.entrySet()) {
+            List<long[]> intervals = entry.getValue();
+            long[] flat = new long[intervals.size() * 2];
+            for (int i = 0; i < intervals.size(); i++) {
+                flat[2 * i] = intervals.get(i)[0];
+                flat[2 * i + 1] = intervals.get(i)[1];
+            }
+            blockedIntervals[entry.getKey()] = flat;
+        }
+
+        logger.info(String.format("Router dependiente del tiempo: %d bloqueos sobre %d tramos dirigidos",
+                sorted.size(), intervalsByEdge.size()));
+        return new TimeDependentRouter(graph, blockedIntervals, intervalsByEdge.size(), locationNames);
+    }
+
+    private static void addInterval(Map<Integer, List<long[]>> intervalsByEdge, int key, long start, long end) {
+        List<long[]> intervals = intervalsByEdge.computeIfAbsent(key, k -> new ArrayList<>());
+        long[] last = intervals.isEmpty() ? null : intervals.get(intervals.size() - 1);
+        if (last != null && start <= last[1]) {
+            last[1] = Math.max(last[1], end);
+        } else {
+            intervals.add(new long[]{start, end});
+        }
+    }
+
+    private static long toMinutes(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * @return true si hay al menos un tramo con bloqueos.
+     */
+    public boolean hasBlockages() {
+        return blockedEdgeCount > 0;
+    }
+
+    /**
+     * Primer instante, no anterior a time, en que se puede entrar al tramo.
+     */
+    private long earliestDeparture(int arc, long time) {
+        long[] intervals = blockedIntervals[arc];
+        if (intervals == null) {
+            return time;
+        }
+        // Último intervalo con inicio <= time
+        int lo = 0;
+        int hi = intervals.length / 2 - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (intervals[2 * mid] <= time) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found >= 0 && time < intervals[2 * found + 1] ? intervals[2 * found + 1] : time;
+    }
+
+    /**
+     * Calcula la ruta de llegada más temprana saliendo de start en departureTime. Las esperas ante un tramo
+     * bloqueado se suman a la duración de ese tramo.
+     *
+     * @return Lista de RouteSegment, vacía si no hay camino o si origen y destino coinciden.
+     */
+    public List<RouteSegment> findRoute(int start, int end, LocalDateTime departureTime) {
+        if (start == end) {
+            return Collections.emptyList();
+        }
+        long departure = toMinutes(departureTime);
+        long[] arrival = new long[n];
+        int[] pred = new int[n];
+        int[] predArc = new int[n]; // arco por el que se llegó a cada nodo
+        Arrays.fill(arrival, Long.MAX_VALUE);
+        Arrays.fill(pred, -1);
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+
+        arrival[start] = departure;
+        heap.insertOrDecrease(start, departure);
+        boolean reached = false;
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            if (u == end) {
+                reached = true;
+                break;
+            }
+            long au = arrival[u];
+            for (int arc = graph.firstArc(u), last = graph.endArc(u); arc < last; arc++) {
+                int v = graph.target(arc);
+                long candidate = earliestDeparture(arc, au) + graph.minutes(arc);
+                if (candidate < arrival[v]) {
+                    arrival[v] = candidate;
+                    pred[v] = u;
+                    predArc[v] = arc;
+                    heap.insertOrDecrease(v, candidate);
+                }
+            }
+        }
+        if (!reached) {
+            logger.warning(String.format("No existe camino dependiente del tiempo desde %s hasta %s.",
+                    graph.ubigeo(start), graph.ubigeo(end)));
+            return Collections.emptyList();
+        }
+
+        List<RouteSegment> route = new ArrayList<>();
+        for (int toNode = end; toNode != start; ) {
+            int arc = predArc[toNode];
+            int fromNode = pred[toNode];
+            route.add(new RouteSegment(locationNames.get(fromNode) + " to " + locationNames.get(toNode),
+                    graph.ubigeo(fromNode), graph.ubigeo(toNode), graph.distanceKm(arc),
+                    arrival[toNode] - arrival[fromNode]));
+            toNode = fromNode;
+        }
+        Collections.reverse(route);
+        return route;
+    }
+
+    /**
+     * Indica si, saliendo en departureTime, la ruta entraría a algún tramo durante una ventana de bloqueo.
+     */
+    public boolean conflictsWithBlockages(List<RouteSegment> route, LocalDateTime departureTime) {
+        long time = toMinutes(departureTime);
+        for (RouteSegment segment : route) {
+            Integer fromIndex = locationIndices.get(segment.getFromUbigeo());
+            Integer toIndex = locationIndices.get(segment.getToUbigeo());
+            int arc = fromIndex == null || toIndex == null ? -1 : graph.findArc(fromIndex, toIndex);
+            if (arc < 0) {
+                return false;
+            }
+            if (earliestDeparture(arc, time) != time) {
+                return true;
+            }
+            time += segment.getDurationMinutes();
+        }
+        return false;
+    }
+
+    /**
+     * Devuelve la ruta tal cual si no cruza ninguna ventana de bloqueo; si la cruza, la reemplaza por la ruta
+     * dependiente del tiempo entre los mismos extremos, para no tener que recalcularla a mitad del viaje.
+     *
+     * @param route         Ruta calculada con los bloqueos activos al momento de planificar.
+     * @param departureTime Hora de salida del vehículo.
+     * @return Ruta a asignar al vehículo.
+     */
+    public List<RouteSegment> adjustRoute(List<RouteSegment> route, LocalDateTime departureTime) {
+        if (route == null || route.isEmpty() || !hasBlockages() || !conflictsWithBlockages(route, departureTime)) {
+            return route;
+        }
+        String originUbigeo = route.get(0).getFromUbigeo();
+        String destinationUbigeo = route.get(route.size() - 1).getToUbigeo();
+        List<RouteSegment> adjusted = findRoute(locationIndices.get(originUbigeo), locationIndices.get(destinationUbigeo),
+                departureTime);
+        if (adjusted.isEmpty()) {
+            return route;
+        }
+        logger.info(String.format("Ruta %s -> %s ajustada a bloqueos futuros: %d -> %d minutos",
+                originUbigeo, destinationUbigeo, totalMinutes(route), totalMinutes(adjusted)));
+        return adjusted;
+    }
+
+    private static long totalMinutes(List<RouteSegment> route) {
+        long total = 0;
+        for (RouteSegment segment : route) {
+            total += segment.getDurationMinutes();
+        }
+        return total;
+    }
+}
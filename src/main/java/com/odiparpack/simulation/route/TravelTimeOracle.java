@@ -0,0 +1,19 @@
+package com.odiparpack.simulation.route;
+
+/**
+ * Tiempo mínimo de viaje entre dos nodos, con la misma indexación que la matriz de tiempos. Permite cambiar
+ * una tabla densa n × n por un índice más compacto sin tocar a quien consulta.
+ */
+public interface TravelTimeOracle {
+    long UNREACHABLE = Long.MAX_VALUE;
+
+    /**
+     * @return Minutos del camino mínimo de from a to, o UNREACHABLE si no hay camino.
+     */
+    long travelTime(int from, int to);
+
+    /**
+     * @return Número de nodos.
+     */
+    int size();
+}
@@ -0,0 +1,249 @@
+package com.odiparpack.simulation.route;
+
+import com.odiparpack.simulation.blockage.BlockageSnapshot;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Tabla por nodo con el almacén principal más cercano, el tiempo hasta él y el siguiente salto del camino.
+ * <p>
+ * Se construye con un único Dijkstra inverso multi-origen que parte de todos los almacenes a la vez. Cada nodo
+ * conserva dos etiquetas de almacenes distintos: la mejor y la segunda mejor. La segunda se usa cuando el
+ * vehículo ya está en un almacén principal, para enviarlo al almacén más cercano distinto del actual.
+ * Elegir el almacén de retorno es así una consulta O(1). La tabla se recalcula al cambiar los bloqueos activos.
+ * <p>
+ * La búsqueda recorre los vecinos en el grafo CSR, de modo que cada recálculo cuesta O(E log V) en lugar de
+ * O(V²) sobre la matriz.
+ */
+public class WarehouseDistanceTable {
+    private static final Logger logger = Logger.getLogger(WarehouseDistanceTable.class.getName());
+
+    public static final long UNREACHABLE = Long.MAX_VALUE;
+    private static final int LABELS = 2;
+
+    private final int n;
+    private final RoadGraph graph;
+    private final int[] warehouseNodes;
+    private final List<String> warehouseUbigeos;
+    private final Map<String, Integer> locationIndices;
+    private BlockageSnapshot blockages; // Vista con que se calculó la tabla; solo con el monitor
+    private volatile Snapshot snapshot;
+
+    /**
+     * Resultado inmutable de una búsqueda; se publica completo para que las lecturas no necesiten bloqueo.
+     * Para el nodo v y la etiqueta k (0 = mejor, 1 = segunda) la posición es v * LABELS + k.
+     */
+    private static final class Snapshot {
+        final int[] warehouse; // nodo del almacén, -1 si no hay etiqueta
+        final long[] time;
+        final int[] nextHop;   // siguiente nodo hacia el almacén (el propio nodo si ya está en él)
+
+        Snapshot(int n) {
+            warehouse = new int[n * LABELS];
+            time = new long[n * LABELS];
+            nextHop = new int[n * LABELS];
+            Arrays.fill(warehouse, -1);
+            Arrays.fill(time, UNREACHABLE);
+            Arrays.fill(nextHop, -1);
+        }
+    }
+
+    private WarehouseDistanceTable(RoadGraph graph, List<String> warehouseUbigeos) {
+        this.n = graph.nodeCount();
+        this.graph = graph;
+        this.locationIndices = graph.getLocationIndices();
+        this.warehouseUbigeos = new ArrayList<>();
+        List<Integer> nodes = new ArrayList<>();
+        for (String ubigeo : warehouseUbigeos) {
+            Integer index = locationIndices.get(ubigeo);
+            if (index == null) {
+                logger.warning("Almacén principal no encontrado en locationIndices: " + ubigeo);
+            } else if (!nodes.contains(index)) {
+                nodes.add(index);
+                this.warehouseUbigeos.add(ubigeo);
+            }
+        }
+        this.warehouseNodes = nodes.stream().mapToInt(Integer::intValue).toArray();
+        this.blockages = BlockageSnapshot.empty(graph);
+    }
+
+    /**
+     * Construye la tabla sobre el grafo sin bloqueos.
+     *
+     * @param graph            Grafo de carreteras en formato CSR.
+     * @param warehouseUbigeos Ubigeos de los almacenes principales.
+     * @return Tabla lista para consultas.
+     */
+    public static WarehouseDistanceTable build(RoadGraph graph, List<String> warehouseUbigeos) {
+        WarehouseDistanceTable table = new WarehouseDistanceTable(graph, warehouseUbigeos);
+        table.recompute();
+        return table;
+    }
+
+    /**
+     * Sincroniza la tabla con la vista de bloqueos activos. Solo se recalcula si los arcos bloqueados cambiaron
+     * desde la última sincronización.
+     *
+     * @return true si la tabla se recalculó.
+     */
+    public synchronized boolean applyBlockages(BlockageSnapshot blockages) {
+        if (blockages.sameArcsAs(this.blockages)) {
+            return false;
+        }
+        this.blockages = blockages;
+        recompute();
+        return true;
+    }
+
+    /**
+     * Dijkstra inverso multi-origen con dos etiquetas por nodo (de almacenes distintos). Se recorren los tramos
+     * v→u al asentar u, de modo que el tiempo obtenido es el de ir desde v hasta el almacén. Como los tramos
+     * son bidireccionales, los arcos entrantes de u son los salientes del grafo CSR con el mismo tiempo.
+     */
+    private synchronized void recompute() {
+        long startNanos = System.nanoTime();
+        Snapshot next = new Snapshot(n);
+        boolean[] settled = new boolean[n * LABELS];
+        IndexedMinHeap heap = new IndexedMinHeap(n * LABELS);
+
+        for (int warehouse : warehouseNodes) {
+            int label = warehouse * LABELS;
+            next.warehouse[label] = warehouse;
+            next.time[label] = 0;
+            next.nextHop[label] = warehouse;
+            heap.insertOrDecrease(label, 0);
+        }
+
+        while (!heap.isEmpty()) {
+            int label = heap.poll();
+            settled[label] = true;
+            int u = label / LABELS;
+            int source = next.warehouse[label];
+            long du = next.time[label];
+
+            for (int arc = graph.firstArc(u), end = graph.endArc(u); arc < end; arc++) {
+                int v = graph.target(arc);
+                // La vista marca los dos sentidos de cada tramo: u→v está bloqueado si y solo si v→u lo está
+                if (blockages.isBlocked(arc)) continue;
+                long candidate = du + graph.minutes(arc);
+                int target = selectLabel(next, settled, v, source, candidate);
+                if (target < 0) continue;
+                next.warehouse[target] = source;
+                next.time[target] = candidate;
+                next.nextHop[target] = u;
+                heap.insertOrDecrease(target, candidate);
+            }
+        }
+
+        snapshot = next;
+        logger.info(String.format("Tabla de almacenes más cercanos recalculada: %d nodos, %d almacenes, %d bloqueos en %d µs",
+                n, warehouseNodes.length, blockages.getBlockedArcCount() / 2, (System.nanoTime() - startNanos) / 1_000));
+    }
+
+    /**
+     * Elige la etiqueta de v que debe tomar el candidato (source, candidate), o -1 si no mejora ninguna.
+     * Si v ya tiene una etiqueta del mismo almacén solo se puede mejorar esa; si no, se ocupa una libre o se
+     * reemplaza la peor etiqueta aún no asentada.
+     */
+    private static int selectLabel(Snapshot s, boolean[] settled, int v, int source, long candidate) {
+        int base = v * LABELS;
+        int free = -1;
+        int worst = -1;
+        for (int k = base; k < base + LABELS; k++) {
+            if (s.warehouse[k] == source) {
+                return !settled[k] && candidate < s.time[k] ? k : -1;
+            }
+            if (s.warehouse[k] == -1) {
+                if (free < 0) free = k;
+            } else if (!settled[k] && (worst < 0 || s.time[k] > s.time[worst])) {
+                worst = k;
+            }
+        }
+        if (free >= 0) return free;
+        return worst >= 0 && candidate < s.time[worst] ? worst : -1;
+    }
+
+    /**
+     * Etiqueta a usar para el nodo: la mejor, o la segunda si la mejor es el propio nodo.
+     */
+    private static int labelFor(Snapshot s, int node) {
+        int best = node * LABELS;
+        int second = best + 1;
+        if (s.time[second] < s.time[best]) {
+            int swap = best;
+            best = second;
+            second = swap;
+        }
+        int label = s.warehouse[best] == node ? second : best;
+        return s.warehouse[label] >= 0 ? label : -1;
+    }
+
+    public List<String> getWarehouseUbigeos() {
+        return Collections.unmodifiableList(warehouseUbigeos);
+    }
+
+    /**
+     * @return Ubigeo del almacén principal más cercano (distinto del actual si ya está en uno), o null si no
+     * hay ninguno alcanzable.
+     */
+    public String getNearestWarehouse(String ubigeo) {
+        Integer node = locationIndices.get(ubigeo);
+        if (node == null) return null;
+        Snapshot s = snapshot;
+        int label = labelFor(s, node);
+        if (label < 0) return null;
+        return warehouseUbigeos.get(indexOfWarehouse(s.warehouse[label]));
+    }
+
+    /**
+     * @return Tiempo en minutos hasta el almacén devuelto por getNearestWarehouse, o UNREACHABLE.
+     */
+    public long getTimeToNearestWarehouse(String ubigeo) {
+        Integer node = locationIndices.get(ubigeo);
+        if (node == null) return UNREACHABLE;
+        Snapshot s = snapshot;
+        int label = labelFor(s, node);
+        return label < 0 ? UNREACHABLE : s.time[label];
+    }
+
+    /**
+     * @return Siguiente nodo en el camino hacia el almacén devuelto por getNearestWarehouse, o -1.
+     */
+    public int getNextHop(int node) {
+        Snapshot s = snapshot;
+        int label = labelFor(s, node);
+        return label < 0 ? -1 : s.nextHop[label];
+    }
+
+    /**
+     * Reconstruye con los siguientes saltos el camino hacia el almacén devuelto por getNearestWarehouse.
+     *
+     * @return Secuencia de nodos (incluye extremos) o null si no hay almacén alcanzable.
+     */
+    public int[] pathToNearestWarehouse(int node) {
+        Snapshot s = snapshot;
+        int label = labelFor(s, node);
+        if (label < 0) return null;
+        int warehouse = s.warehouse[label];
+
+        List<Integer> path = new ArrayList<>();
+        path.add(node);
+        int current = node;
+        while (current != warehouse) {
+            current = s.nextHop[label];
+            path.add(current);
+            // En el siguiente nodo se sigue la etiqueta del mismo almacén
+            int base = current * LABELS;
+            label = s.warehouse[base] == warehouse ? base : base + 1;
+        }
+        return path.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private int indexOfWarehouse(int node) {
+        for (int i = 0; i < warehouseNodes.length; i++) {
+            if (warehouseNodes[i] == node) return i;
+        }
+        throw new IllegalStateException("Nodo de almacén desconocido: " + node);
+    }
+}
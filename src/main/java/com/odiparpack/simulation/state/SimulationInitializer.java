@@ -1,15 +1,27 @@
 package com.odiparpack.simulation.state;
 
+import com.odiparpack.DataLoader;
+import com.odiparpack.Main;
 import com.odiparpack.models.*;
 import com.odiparpack.services.DataService;
 import com.odiparpack.simulation.blockage.BlockageManager;
 import com.odiparpack.simulation.maintenance.MaintenanceManager;
 import com.odiparpack.simulation.order.OrderManager;
+import com.odiparpack.simulation.route.AllPairsTable;
+import com.odiparpack.simulation.route.ContractionHierarchy;
+import com.odiparpack.simulation.route.LandmarkTable;
+import com.odiparpack.simulation.route.OverlayGraph;
+import com.odiparpack.simulation.route.RoadGraph;
 import com.odiparpack.simulation.route.RouteManager;
+import com.odiparpack.simulation.route.RoutingIndexes;
+import com.odiparpack.simulation.route.ShortestPathEngine;
+import com.odiparpack.simulation.route.TimeDependentRouter;
+import com.odiparpack.simulation.route.WarehouseDistanceTable;
 import com.odiparpack.simulation.vehicle.VehicleManager;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * La clase SimulationInitializer se encarga de inicializar los componentes de la simulación
@@ -23,8 +35,10 @@ public class SimulationInitializer {
     }
 
     public SimulationComponents initializeComponents() {
-        Map<String, Location> locations = dataService.loadLocations("src/main/resources/locations.txt");
-        List<Edge> edges = dataService.loadEdges("src/main/resources/edges.txt", locations);
+        String locationsFile = "src/main/resources/locations.txt";
+        String edgesFile = "src/main/resources/edges.txt";
+        Map<String, Location> locations = dataService.loadLocations(locationsFile);
+        List<Edge> edges = dataService.loadEdges(edgesFile, locations);
         List<Vehicle> vehiclesList = dataService.loadVehicles("src/main/resources/vehicles.txt");
         List<Order> orders = dataService.loadOrders("src/main/resources/orders.txt", locations);
         List<Blockage> blockages = dataService.loadBlockages("src/main/resources/blockages.txt");
@@ -32,7 +46,12 @@ public class SimulationInitializer {
 
         List<Location> locationList = new ArrayList<>(locations.values());
         Map<String, Integer> locationIndices = createLocationIndices(locationList);
-        long[][] timeMatrix = dataService.createTimeMatrix(locationList, edges);
+        RoadGraph roadGraph = dataService.createRoadGraph(locationList, edges);
+        long[][] timeMatrix = dataService.createTimeMatrix(roadGraph);
+        AllPairsTable allPairsTable = dataService.createAllPairsTable(timeMatrix, locationsFile, edgesFile);
+        ContractionHierarchy contractionHierarchy = dataService.createContractionHierarchy(roadGraph);
+        LandmarkTable landmarkTable = dataService.createLandmarkTable(roadGraph);
+        OverlayGraph overlayGraph = dataService.createOverlayGraph(roadGraph, locationList);
         List<String> locationNames = createLocationNames(locationList);
         List<String> locationUbigeos = createLocationUbigeos(locationList);
         Map<String, Vehicle> vehicles = createVehicleMap(vehiclesList);
@@ -41,9 +60,28 @@ public class SimulationInitializer {
         // Inicializar los managers
         WarehouseManager warehouseManager = new WarehouseManager(locations);
         MaintenanceManager maintenanceManager = new MaintenanceManager(maintenanceSchedule);
-        BlockageManager blockageManager = new BlockageManager(blockages, timeMatrix, locationIndices);
-        RouteManager routeManager = new RouteManager(new RouteCache(1000), locationIndices, locationNames,
-                locationUbigeos, blockageManager);
+        WarehouseDistanceTable warehouseDistanceTable = WarehouseDistanceTable.build(roadGraph,
+                VehicleManager.MAIN_WAREHOUSES);
+        RouteCache routeCache = new RouteCache(Main.ROUTE_CACHE_CAPACITY);
+        routeCache.registerMetrics(Main.metricRegistry);
+        CompletableFuture<Integer> routeCacheLoad = dataService.loadRouteCacheAsync(routeCache, roadGraph);
+        RoutingIndexes routingIndexes = RoutingIndexes.builder()
+                .roadGraph(roadGraph)
+                .allPairsTable(allPairsTable)
+                .contractionHierarchy(contractionHierarchy)
+                .landmarkTable(landmarkTable)
+                .overlayGraph(overlayGraph)
+                .warehouseDistanceTable(warehouseDistanceTable)
+                .timeDependentRouter(TimeDependentRouter.build(roadGraph, blockages, locationNames))
+                .build();
+        BlockageManager blockageManager = new BlockageManager(blockages, timeMatrix, routingIndexes, routeCache);
+        dataService.precomputeAlternativeRoutes(routeCache, roadGraph, locationNames,
+                DataLoader.warehouseToCapitalPairs(VehicleManager.MAIN_WAREHOUSES, locationUbigeos),
+                Main.ALTERNATIVE_ROUTES_K);
+        dataService.warmUpRouteCache(routeCacheLoad, routeCache, VehicleManager.MAIN_WAREHOUSES, locationUbigeos,
+                () -> new ShortestPathEngine(timeMatrix, locationNames, locationUbigeos, routingIndexes));
+        RouteManager routeManager = new RouteManager(routeCache, locationIndices, locationNames,
+                locationUbigeos, blockageManager, routingIndexes);
         OrderManager orderManager = new OrderManager(orders);
         VehicleManager vehicleManager = new VehicleManager(vehicles, warehouseManager, routeManager, maintenanceManager);
 
@@ -26,7 +26,7 @@ public class VehicleManager {
     private final RouteManager routeManager;
     private final MaintenanceManager maintenanceManager;
     private final ReentrantLock lock = new ReentrantLock();
-    private final List<String> mainWarehouses = Arrays.asList("150101", "040201", "130101"); // Lima, Arequipa, Trujillo
+    public static final List<String> MAIN_WAREHOUSES = Arrays.asList("150101", "040201", "130101"); // Lima, Arequipa, Trujillo
     private static final Map<String, List<String>> breakdownLogs = new HashMap<>();
 
     /**
@@ -110,7 +110,7 @@ public class VehicleManager {
      */
     private void processNewRoutes(List<Vehicle> vehiclesNeedingNewRoutes, LocalDateTime currentTime, long[][] timeMatrix) {
         new Thread(() -> {
-            Map<Vehicle, List<RouteSegment>> calculatedRoutes = routeManager.calculateRoutesToWarehouses(vehiclesNeedingNewRoutes, mainWarehouses, timeMatrix);
+            Map<Vehicle, List<RouteSegment>> calculatedRoutes = routeManager.calculateRoutesToWarehouses(vehiclesNeedingNewRoutes, MAIN_WAREHOUSES, timeMatrix, currentTime);
             for (Vehicle vehicle : vehiclesNeedingNewRoutes) {
                 List<RouteSegment> route = calculatedRoutes.get(vehicle);
                 if (route != null && !route.isEmpty()) {
@@ -154,7 +154,7 @@ public class VehicleManager {
                 Order order = assignment.getOrder();
 
                 // Obtener la ruta desde el origen hasta el destino de la orden
-                List<RouteSegment> route = routeManager.calculateRouteForAssignment(vehicle, order, timeMatrix);
+                List<RouteSegment> route = routeManager.calculateRouteForAssignment(vehicle, order, timeMatrix, currentTime);
                 if (route != null && !route.isEmpty()) {
                     vehicle.setRoute(route);
                     vehicle.startJourney(currentTime, order);
@@ -0,0 +1,180 @@
+package com.odiparpack.models;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteCacheTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final List<Blockage> NO_BLOCKAGES = Collections.emptyList();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void frequentPairsSurviveScanOfOneOffPairs() {
+        RouteCache cache = new RouteCache(100);
+        for (int i = 0; i < 50; i++) {
+            cache.putRoute("H" + i, "W", route("H" + i, "M" + i, "W"), NO_BLOCKAGES);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.getRoute("H" + i, "W"));
+            }
+        }
+
+        // Reruteos puntuales: cada par se guarda una vez y no se vuelve a pedir
+        for (int i = 0; i < 1000; i++) {
+            cache.putRoute("S" + i, "W", route("S" + i, "W"), NO_BLOCKAGES);
+        }
+
+        assertTrue(cache.size() <= 100);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(cache.containsRoute("H" + i, "W"), "par frecuente desalojado: H" + i);
+        }
+    }
+
+    @Test
+    void frequentNewcomerDisplacesColdEntry() {
+        RouteCache cache = new RouteCache(100);
+        for (int i = 0; i < 100; i++) {
+            cache.putRoute("C" + i, "W", route("C" + i, "W"), NO_BLOCKAGES);
+        }
+        cache.putRoute("N", "W", route("N", "W"), NO_BLOCKAGES);
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.getRoute("N", "W"));
+        }
+
+        // La siguiente clave empuja a N fuera de la ventana; su frecuencia supera a la de la víctima
+        cache.putRoute("X", "W", route("X", "W"), NO_BLOCKAGES);
+
+        assertTrue(cache.containsRoute("N", "W"));
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    void coldCandidateIsRejectedWhenCacheIsFull() {
+        RouteCache cache = new RouteCache(100);
+        for (int i = 0; i < 100; i++) {
+            cache.putRoute("C" + i, "W", route("C" + i, "W"), NO_BLOCKAGES);
+            for (int access = 0; access < 3; access++) {
+                cache.getRoute("C" + i, "W");
+            }
+        }
+
+        // N nunca se pidió: al salir de la ventana pierde contra cualquier víctima ya consultada
+        cache.putRoute("N", "W", route("N", "W"), NO_BLOCKAGES);
+        cache.putRoute("X", "W", route("X", "W"), NO_BLOCKAGES);
+
+        assertFalse(cache.containsRoute("N", "W"));
+        assertTrue(cache.containsRoute("X", "W"));
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    void unreachablePairExpiresOnlyWhenSomeRoadIsReleased() {
+        RouteCache cache = new RouteCache(100);
+        Blockage first = new Blockage("A", "B", START, START.plusDays(1));
+        Blockage second = new Blockage("C", "D", START, START.plusDays(1));
+        cache.applyBlockages(Collections.singletonList(first));
+
+        cache.markUnreachable("A", "Z", cache.getBlockageEpoch());
+        assertTrue(cache.isUnreachable("A", "Z"));
+
+        // Bloquear más tramos no puede abrir un camino
+        cache.applyBlockages(Arrays.asList(first, second));
+        assertTrue(cache.isUnreachable("A", "Z"));
+
+        long epochBeforeRelease = cache.getBlockageEpoch();
+        cache.applyBlockages(Collections.singletonList(second));
+        assertFalse(cache.isUnreachable("A", "Z"));
+
+        // Un resultado calculado antes de la liberación ya no se registra
+        cache.markUnreachable("A", "Z", epochBeforeRelease);
+        assertFalse(cache.isUnreachable("A", "Z"));
+
+        cache.markUnreachable("A", "Z", cache.getBlockageEpoch());
+        assertTrue(cache.isUnreachable("A", "Z"));
+        assertFalse(cache.isUnreachable("Z", "A"));
+    }
+
+    @Test
+    void savedVersionsLoadIntoNewCache() throws Exception {
+        RouteCache original = new RouteCache(100);
+        Blockage blockage = new Blockage("B", "C", START, START.plusDays(1));
+        original.putRoute("A", "D", route("A", "B", "C", "D"), NO_BLOCKAGES);
+        original.putRoute("A", "D", route("A", "E", "D"), Collections.singletonList(blockage));
+        original.putRoute("F", "G", route("F", "G"), NO_BLOCKAGES);
+        Path file = tempDir.resolve("route-cache.bin");
+
+        assertEquals(3, original.save(file, 99L));
+
+        RouteCache loaded = new RouteCache(100);
+        assertEquals(3, loaded.load(file, 99L));
+        assertEquals(2, loaded.size());
+        assertSameRoute(original.getRoute("A", "D"), loaded.getRoute("A", "D"));
+        assertSameRoute(original.getRoute("G", "F"), loaded.getRoute("G", "F"));
+    }
+
+    @Test
+    void loadedVersionsFollowCurrentBlockages() throws Exception {
+        RouteCache original = new RouteCache(100);
+        original.putRoute("A", "D", route("A", "B", "C", "D"), NO_BLOCKAGES);
+        original.putRoute("A", "D", route("A", "E", "F", "G", "D"), NO_BLOCKAGES);
+        Path file = tempDir.resolve("route-cache.bin");
+        original.save(file, 99L);
+
+        RouteCache loaded = new RouteCache(100);
+        loaded.applyBlockages(Collections.singletonList(new Blockage("C", "B", START, START.plusDays(1))));
+        loaded.load(file, 99L);
+
+        assertSameRoute(route("A", "E", "F", "G", "D"), loaded.getRoute("A", "D"));
+    }
+
+    @Test
+    void loadIgnoresFileOfOtherGraph() throws Exception {
+        RouteCache original = new RouteCache(100);
+        original.putRoute("A", "B", route("A", "B"), NO_BLOCKAGES);
+        Path file = tempDir.resolve("route-cache.bin");
+        original.save(file, 99L);
+
+        RouteCache loaded = new RouteCache(100);
+
+        assertEquals(0, loaded.load(file, 100L));
+        assertEquals(0, loaded.size());
+    }
+
+    /**
+     * Ruta por los ubigeos indicados; cada tramo dura 10 minutos más que el anterior.
+     */
+    private static List<RouteSegment> route(String... ubigeos) {
+        List<RouteSegment> segments = new ArrayList<>();
+        for (int i = 1; i < ubigeos.length; i++) {
+            segments.add(new RouteSegment(ubigeos[i - 1] + " to " + ubigeos[i], ubigeos[i - 1], ubigeos[i],
+                    5.0 * i, 10L * i));
+        }
+        return segments;
+    }
+
+    private static void assertSameRoute(List<RouteSegment> expected, List<RouteSegment> actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            RouteSegment want = expected.get(i);
+            RouteSegment got = actual.get(i);
+            assertEquals(want.getFromUbigeo(), got.getFromUbigeo());
+            assertEquals(want.getToUbigeo(), got.getToUbigeo());
+            assertEquals(want.getName(), got.getName());
+            assertEquals(want.getDistance(), got.getDistance());
+            assertEquals(want.getDurationMinutes(), got.getDurationMinutes());
+        }
+    }
+}
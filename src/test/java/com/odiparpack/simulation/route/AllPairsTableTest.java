@@ -0,0 +1,117 @@
+package com.odiparpack.simulation.route;
+
+import com.odiparpack.models.Blockage;
+import com.odiparpack.simulation.blockage.BlockageSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllPairsTableTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @TempDir
+    Path tempDir;
+
+    private RoadGraph graph;
+    private long[][] baseMatrix;
+
+    @BeforeEach
+    void setUp() {
+        graph = TestGraphs.graph(60, 90, 7);
+        baseMatrix = graph.toTimeMatrix();
+    }
+
+    @Test
+    void repairedRowsMatchFullRebuildAfterBlockAndUnblock() {
+        AllPairsTable table = AllPairsTable.build(baseMatrix);
+        Random random = new Random(11);
+        List<Blockage> active = new ArrayList<>();
+
+        for (int epoch = 1; epoch <= 12; epoch++) {
+            // Bloquear tramos nuevos y liberar algunos de los anteriores en la misma época
+            if (!active.isEmpty() && random.nextBoolean()) {
+                active.remove(random.nextInt(active.size()));
+            }
+            for (int i = 0; i < 3; i++) {
+                int arc = random.nextInt(graph.arcCount());
+                active.add(new Blockage(graph.ubigeo(graph.source(arc)), graph.ubigeo(graph.target(arc)),
+                        START, START.plusDays(1)));
+            }
+            BlockageSnapshot snapshot = BlockageSnapshot.of(epoch, active, graph);
+
+            table.applyBlockages(snapshot);
+
+            assertSameTimes(AllPairsTable.build(snapshot.applyTo(baseMatrix)), table);
+        }
+
+        table.applyBlockages(BlockageSnapshot.of(13, new ArrayList<>(), graph));
+        assertSameTimes(AllPairsTable.build(baseMatrix), table);
+    }
+
+    @Test
+    void repairedPathsFollowOpenArcs() {
+        AllPairsTable table = AllPairsTable.build(baseMatrix);
+        List<Blockage> active = new ArrayList<>();
+        for (int arc = 0; arc < graph.arcCount(); arc += 9) {
+            active.add(new Blockage(graph.ubigeo(graph.source(arc)), graph.ubigeo(graph.target(arc)),
+                    START, START.plusDays(1)));
+        }
+        BlockageSnapshot snapshot = BlockageSnapshot.of(1, active, graph);
+        long[][] blockedMatrix = snapshot.applyTo(baseMatrix);
+
+        table.applyBlockages(snapshot);
+
+        for (int from = 0; from < table.size(); from++) {
+            for (int to = 0; to < table.size(); to++) {
+                int[] path = table.path(from, to);
+                if (table.getTime(from, to) == AllPairsTable.UNREACHABLE) {
+                    assertNull(path, from + " -> " + to);
+                } else {
+                    assertEquals(table.getTime(from, to), TestGraphs.cost(blockedMatrix, path), from + " -> " + to);
+                }
+            }
+        }
+    }
+
+    @Test
+    void mappedTableRoundTrip() throws Exception {
+        Path file = tempDir.resolve("all-pairs.bin");
+        AllPairsTable built = AllPairsTable.loadOrBuild(file, baseMatrix, 42L);
+
+        AllPairsTable loaded = AllPairsTable.load(file, baseMatrix, 42L);
+
+        assertNotNull(loaded);
+        assertSameTimes(built, loaded);
+        for (int from = 0; from < built.size(); from++) {
+            for (int to = 0; to < built.size(); to++) {
+                assertArrayEquals(built.path(from, to), loaded.path(from, to), from + " -> " + to);
+            }
+        }
+    }
+
+    @Test
+    void loadRejectsTableOfOtherInputs() throws Exception {
+        Path file = tempDir.resolve("all-pairs.bin");
+        AllPairsTable.loadOrBuild(file, baseMatrix, 42L);
+
+        assertNull(AllPairsTable.load(file, baseMatrix, 43L));
+        assertNull(AllPairsTable.load(file, TestGraphs.graph(61, 90, 7).toTimeMatrix(), 42L));
+    }
+
+    private static void assertSameTimes(AllPairsTable expected, AllPairsTable actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int from = 0; from < expected.size(); from++) {
+            for (int to = 0; to < expected.size(); to++) {
+                assertEquals(expected.getTime(from, to), actual.getTime(from, to), from + " -> " + to);
+            }
+        }
+    }
+}
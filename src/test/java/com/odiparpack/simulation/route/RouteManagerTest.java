@@ -0,0 +1,114 @@
+package com.odiparpack.simulation.route;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.odiparpack.Main;
+import com.odiparpack.models.RouteCache;
+import com.odiparpack.models.RouteSegment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteManagerTest {
+    private static final int CALLERS = 6;
+
+    private RoadGraph graph;
+    private long[][] timeMatrix;
+    private GatedRouteCache routeCache;
+    private RouteManager routeManager;
+
+    @BeforeEach
+    void setUp() {
+        graph = TestGraphs.graph(40, 50, 21);
+        timeMatrix = graph.toTimeMatrix();
+        routeCache = new GatedRouteCache();
+        routeManager = new RouteManager(routeCache, graph.getLocationIndices(), graph.getUbigeos(),
+                graph.getUbigeos(), null, RoutingIndexes.builder().roadGraph(graph).build());
+    }
+
+    @Test
+    void concurrentCallersShareOneComputation() throws Exception {
+        Meter coalesced = Main.metricRegistry.meter(MetricRegistry.name(RouteManager.class, "coalescedRequests"));
+        long coalescedBefore = coalesced.getCount();
+        String from = TestGraphs.ubigeo(0);
+        String to = TestGraphs.ubigeo(39);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            // El primero queda dentro del cálculo hasta que los demás se suman a él
+            routeCache.gate = new CountDownLatch(1);
+            List<Future<List<RouteSegment>>> results = new ArrayList<>();
+            results.add(executor.submit(() -> routeManager.calculateSingleRoute(from, to, timeMatrix)));
+            assertTrue(routeCache.entered.await(10, TimeUnit.SECONDS));
+            for (int i = 1; i < CALLERS; i++) {
+                results.add(executor.submit(() -> routeManager.calculateSingleRoute(from, to, timeMatrix)));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (coalesced.getCount() - coalescedBefore < CALLERS - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            routeCache.gate.countDown();
+
+            List<RouteSegment> first = results.get(0).get(10, TimeUnit.SECONDS);
+            assertFalse(first.isEmpty());
+            for (Future<List<RouteSegment>> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, routeCache.computations.get());
+            assertEquals(CALLERS - 1, coalesced.getCount() - coalescedBefore);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void finishedComputationIsNotReused() {
+        String from = TestGraphs.ubigeo(3);
+        String to = TestGraphs.ubigeo(30);
+
+        List<RouteSegment> first = routeManager.calculateSingleRoute(from, to, timeMatrix);
+        List<RouteSegment> second = routeManager.calculateSingleRoute(from, to, timeMatrix);
+
+        assertEquals(2, routeCache.computations.get());
+        assertNotSame(first, second);
+        assertEquals(first.size(), second.size());
+    }
+
+    /**
+     * Caché que cuenta los cálculos de RouteManager (cada uno consulta primero isUnreachable) y puede retener al
+     * hilo que calcula hasta que se abra la compuerta.
+     */
+    private static final class GatedRouteCache extends RouteCache {
+        final AtomicInteger computations = new AtomicInteger();
+        final CountDownLatch entered = new CountDownLatch(1);
+        volatile CountDownLatch gate;
+
+        GatedRouteCache() {
+            super(100);
+        }
+
+        @Override
+        public boolean isUnreachable(String from, String to) {
+            computations.incrementAndGet();
+            entered.countDown();
+            CountDownLatch current = gate;
+            if (current != null) {
+                try {
+                    current.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.isUnreachable(from, to);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.odiparpack.simulation.route;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compara las búsquedas sobre el grafo CSR con el Dijkstra de ShortestPathEngine sobre la matriz densa.
+ */
+class ShortestPathSearchTest {
+    private RoadGraph graph;
+    private long[][] timeMatrix;
+    private ShortestPathEngine reference;
+
+    @BeforeEach
+    void setUp() {
+        graph = TestGraphs.graph(80, 120, 3);
+        timeMatrix = graph.toTimeMatrix();
+        // Tramos bloqueados en la matriz, como los deja BlockageSnapshot.applyTo
+        Random random = new Random(5);
+        for (int i = 0; i < 15; i++) {
+            int arc = random.nextInt(graph.arcCount());
+            timeMatrix[graph.source(arc)][graph.target(arc)] = Long.MAX_VALUE;
+            timeMatrix[graph.target(arc)][graph.source(arc)] = Long.MAX_VALUE;
+        }
+        reference = new ShortestPathEngine(timeMatrix, graph.getUbigeos(), graph.getUbigeos());
+    }
+
+    @Test
+    void bidirectionalDijkstraMatchesDijkstra() {
+        BidirectionalDijkstra search = new BidirectionalDijkstra(graph, timeMatrix);
+        for (int start = 0; start < graph.nodeCount(); start++) {
+            for (int end = 0; end < graph.nodeCount(); end++) {
+                if (start == end) continue;
+                int[] expected = reference.dijkstra(start, end);
+                for (boolean parallel : new boolean[]{false, true}) {
+                    int[] path = search.shortestPath(start, end, parallel);
+                    String pair = start + " -> " + end + (parallel ? " (paralelo)" : "");
+                    if (expected == null) {
+                        assertNull(path, pair);
+                        continue;
+                    }
+                    long expectedCost = TestGraphs.cost(timeMatrix, expected);
+                    assertNotNull(path, pair);
+                    assertEquals(start, path[0], pair);
+                    assertEquals(end, path[path.length - 1], pair);
+                    assertEquals(expectedCost, TestGraphs.cost(timeMatrix, path), pair);
+                    assertEquals(expectedCost, search.getLastDistance(), pair);
+                }
+            }
+        }
+    }
+
+    @Test
+    void kShortestPathsStartWithDijkstraAndAreSortedAndSimple() {
+        ShortestPathEngine unblocked = new ShortestPathEngine(graph.toTimeMatrix(), graph.getUbigeos(),
+                graph.getUbigeos());
+        Random random = new Random(17);
+        for (int i = 0; i < 200; i++) {
+            int source = random.nextInt(graph.nodeCount());
+            int target = random.nextInt(graph.nodeCount());
+            if (source == target) continue;
+            String pair = source + " -> " + target;
+
+            List<int[]> paths = KShortestPaths.find(graph, source, target, 4);
+
+            int[] shortest = unblocked.dijkstra(source, target);
+            assertFalse(paths.isEmpty(), pair);
+            assertEquals(TestGraphs.cost(graph.toTimeMatrix(), shortest), KShortestPaths.length(graph, paths.get(0)),
+                    pair);
+            Set<List<Integer>> distinct = new HashSet<>();
+            long previous = 0;
+            for (int[] path : paths) {
+                assertEquals(source, path[0], pair);
+                assertEquals(target, path[path.length - 1], pair);
+                List<Integer> nodes = new ArrayList<>();
+                for (int node : path) {
+                    nodes.add(node);
+                }
+                assertEquals(nodes.size(), new HashSet<>(nodes).size(), "camino con ciclo " + pair);
+                assertTrue(distinct.add(nodes), "camino repetido " + pair);
+                long length = KShortestPaths.length(graph, path);
+                assertTrue(length >= previous, "caminos fuera de orden " + pair);
+                previous = length;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.odiparpack.simulation.route;
+
+import com.odiparpack.models.Edge;
+import com.odiparpack.models.Location;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Grafos de carreteras sintéticos para las pruebas: un camino que conecta todos los nodos más tramos al azar,
+ * con coordenadas dentro del Perú.
+ */
+final class TestGraphs {
+
+    private TestGraphs() {
+    }
+
+    static List<Location> locations(int n, long seed) {
+        Random random = new Random(seed);
+        List<Location> locations = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double latitude = -18.0 + 15.0 * random.nextDouble();
+            double longitude = -81.0 + 12.0 * random.nextDouble();
+            locations.add(new Location(ubigeo(i), "DEP" + (i % 5), "PROV" + i, latitude, longitude,
+                    i % 3 == 0 ? "COSTA" : i % 3 == 1 ? "SIERRA" : "SELVA", 0));
+        }
+        return locations;
+    }
+
+    static List<Edge> edges(List<Location> locations, int extraEdges, long seed) {
+        Random random = new Random(seed);
+        int n = locations.size();
+        List<Edge> edges = new ArrayList<>();
+        for (int i = 1; i < n; i++) {
+            edges.add(edge(locations.get(i - 1), locations.get(i), random));
+        }
+        for (int i = 0; i < extraEdges; i++) {
+            int from = random.nextInt(n);
+            int to = random.nextInt(n);
+            if (from != to) {
+                edges.add(edge(locations.get(from), locations.get(to), random));
+            }
+        }
+        return edges;
+    }
+
+    static RoadGraph graph(int n, int extraEdges, long seed) {
+        List<Location> locations = locations(n, seed);
+        return RoadGraph.build(locations, edges(locations, extraEdges, seed));
+    }
+
+    static String ubigeo(int node) {
+        return String.format("%06d", node);
+    }
+
+    /**
+     * @return Duración del camino en la matriz, o Long.MAX_VALUE si algún tramo no existe.
+     */
+    static long cost(long[][] timeMatrix, int[] path) {
+        long total = 0;
+        for (int i = 1; i < path.length; i++) {
+            long minutes = timeMatrix[path[i - 1]][path[i]];
+            if (minutes == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            total += minutes;
+        }
+        return total;
+    }
+
+    private static Edge edge(Location from, Location to, Random random) {
+        double hours = (10 + random.nextInt(600)) / 60.0;
+        return new Edge(from.getUbigeo(), to.getUbigeo(), 1.0 + random.nextInt(500), hours);
+    }
+}